@@ -55,6 +55,16 @@ public class Driver_Derby_SWB extends Driver_Derby {
         }
     }
 
+    @Override
+    protected RDBLongObject IDtoLongObject(int dbID, String table) {
+        return NodeDictionaryCache.getLongObject(m_sql, table, dbID, id -> super.IDtoLongObject(id, table));
+    }
+
+    @Override
+    public DBIDInt getLongObjectID(RDBLongObject lobj, String table, boolean add) {
+        return NodeDictionaryCache.getLongObjectID(m_sql, table, lobj, add, super::getLongObjectID);
+    }
+
     /**
      * Sets the database connection.
      *
@@ -54,6 +54,16 @@ public class Driver_HSQL_SWB extends Driver_HSQL {
         }
     }
 
+    @Override
+    protected RDBLongObject IDtoLongObject(int dbID, String table) {
+        return NodeDictionaryCache.getLongObject(m_sql, table, dbID, id -> super.IDtoLongObject(id, table));
+    }
+
+    @Override
+    public DBIDInt getLongObjectID(RDBLongObject lobj, String table, boolean add) {
+        return NodeDictionaryCache.getLongObjectID(m_sql, table, lobj, add, super::getLongObjectID);
+    }
+
     @Override
     public void setConnection(IDBConnection dbcon) {
         m_dbcon = dbcon;
@@ -56,6 +56,16 @@ public class Driver_MsSQL_SWB extends Driver_MsSQL {
         }
     }
 
+    @Override
+    protected RDBLongObject IDtoLongObject(int dbID, String table) {
+        return NodeDictionaryCache.getLongObject(m_sql, table, dbID, id -> super.IDtoLongObject(id, table));
+    }
+
+    @Override
+    public DBIDInt getLongObjectID(RDBLongObject lobj, String table, boolean add) {
+        return NodeDictionaryCache.getLongObjectID(m_sql, table, lobj, add, super::getLongObjectID);
+    }
+
     /**
      * Set the database connection.
      *
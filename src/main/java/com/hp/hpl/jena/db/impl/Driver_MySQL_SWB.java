@@ -57,6 +57,16 @@ public class Driver_MySQL_SWB extends Driver_MySQL {
         }
     }
 
+    @Override
+    protected RDBLongObject IDtoLongObject(int dbID, String table) {
+        return NodeDictionaryCache.getLongObject(m_sql, table, dbID, id -> super.IDtoLongObject(id, table));
+    }
+
+    @Override
+    public DBIDInt getLongObjectID(RDBLongObject lobj, String table, boolean add) {
+        return NodeDictionaryCache.getLongObjectID(m_sql, table, lobj, add, super::getLongObjectID);
+    }
+
     @Override
     public void setConnection(IDBConnection dbcon) {
         m_dbcon = dbcon;
@@ -0,0 +1,444 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package com.hp.hpl.jena.db.impl;
+
+import org.semanticwb.SWBPlatform;
+import org.semanticwb.platform.SWBMessageCenter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Two way cache of the long objects (long literals and URIs) of the RDB drivers, shared by all driver instances.
+ * <p>
+ * Long objects are resolved by ID with primitive int keys, and by value through a primitive index from the hash
+ * of the value to its ID, the candidate is verified against the cached object. Only committed rows are cached,
+ * lookups made while the driver connection is inside a transaction are not stored.
+ * Rows of the long object tables are never updated and the drivers never delete them one by one, they are only
+ * dropped with the tables of a model, in that case {@link #invalidateCluster()} drops the cache in all the nodes
+ * of the cluster.
+ *
+ * @author javier.solis.g
+ */
+public final class NodeDictionaryCache {
+    /** Message used to clear the cache of the other nodes. */
+    public static final String CLEAR_MESSAGE = "ndc|clr|";
+
+    private static final int SEGMENTS = 16;
+    private static volatile NodeDictionaryCache instance = null;
+
+    private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Lookup of the ID of a long object in the database.
+     */
+    @FunctionalInterface
+    public interface IdLookup {
+        /**
+         * Gets the ID of a long object.
+         *
+         * @param lobj  the long object
+         * @param table long object table
+         * @param add   whether to add the object if it does not exist
+         * @return the ID or null
+         */
+        DBIDInt apply(RDBLongObject lobj, String table, boolean add);
+    }
+
+    /**
+     * Long objects of a table.
+     */
+    private final class Table {
+        final ObjectSegment[] objects = new ObjectSegment[SEGMENTS];
+        final IdSegment[] ids = new IdSegment[SEGMENTS];
+
+        Table() {
+            int limit = Math.max(1, maxSize / SEGMENTS);
+            for (int i = 0; i < SEGMENTS; i++) {
+                objects[i] = new ObjectSegment(limit);
+                ids[i] = new IdSegment(limit);
+            }
+        }
+
+        RDBLongObject get(int id) {
+            return objects[(int) (mix(id) >>> 60)].get(id);
+        }
+
+        int getId(RDBLongObject lobj) {
+            long hash = hash(lobj);
+            int id = ids[(int) (hash >>> 60)].get(hash);
+            if (id > 0) {
+                RDBLongObject obj = get(id);
+                if (obj != null && same(obj, lobj)) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+
+        void put(int id, RDBLongObject lobj) {
+            objects[(int) (mix(id) >>> 60)].put(id, lobj);
+            long hash = hash(lobj);
+            ids[(int) (hash >>> 60)].put(hash, id);
+        }
+    }
+
+    /**
+     * Open addressing table bounded with a clock eviction, keys are primitive longs.
+     */
+    private abstract static class Segment {
+        final int limit;
+        final int mask;
+        final long[] keys;
+        final boolean[] used;
+        final boolean[] referenced;
+        int size = 0;
+        int hand = 0;
+
+        Segment(int limit) {
+            this.limit = limit;
+            int capacity = Integer.highestOneBit(limit * 2 - 1) << 1;
+            mask = capacity - 1;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            referenced = new boolean[capacity];
+        }
+
+        /**
+         * Finds the slot of a key.
+         * @return the slot or -1
+         */
+        final int indexOf(long key) {
+            int i = (int) mix(key) & mask;
+            while (used[i]) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Gets the slot of a key, making room for it if it is new.
+         * @return the slot
+         */
+        final int slotOf(long key) {
+            int i = indexOf(key);
+            if (i >= 0) {
+                return i;
+            }
+            if (size >= limit) {
+                evict();
+            }
+            i = (int) mix(key) & mask;
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            used[i] = true;
+            referenced[i] = false;
+            size++;
+            return i;
+        }
+
+        private void evict() {
+            while (true) {
+                int i = hand;
+                hand = (hand + 1) & mask;
+                if (used[i]) {
+                    if (referenced[i]) {
+                        referenced[i] = false;
+                    } else {
+                        delete(i);
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Deletes a slot shifting back the following entries of its probe sequence.
+         */
+        final void delete(int i) {
+            used[i] = false;
+            clear(i);
+            size--;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (!used[j]) {
+                    return;
+                }
+                int k = (int) mix(keys[j]) & mask;
+                if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                    continue;
+                }
+                keys[i] = keys[j];
+                used[i] = true;
+                referenced[i] = referenced[j];
+                move(j, i);
+                used[j] = false;
+                clear(j);
+                i = j;
+            }
+        }
+
+        abstract void move(int from, int to);
+
+        abstract void clear(int i);
+    }
+
+    /**
+     * Long objects by ID.
+     */
+    private static final class ObjectSegment extends Segment {
+        final RDBLongObject[] values;
+
+        ObjectSegment(int limit) {
+            super(limit);
+            values = new RDBLongObject[keys.length];
+        }
+
+        synchronized RDBLongObject get(int id) {
+            int i = indexOf(id);
+            if (i < 0) {
+                return null;
+            }
+            referenced[i] = true;
+            return values[i];
+        }
+
+        synchronized void put(int id, RDBLongObject lobj) {
+            values[slotOf(id)] = lobj;
+        }
+
+        @Override
+        void move(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        void clear(int i) {
+            values[i] = null;
+        }
+    }
+
+    /**
+     * IDs by hash of the long object.
+     */
+    private static final class IdSegment extends Segment {
+        final int[] values;
+
+        IdSegment(int limit) {
+            super(limit);
+            values = new int[keys.length];
+        }
+
+        synchronized int get(long hash) {
+            int i = indexOf(hash);
+            if (i < 0) {
+                return -1;
+            }
+            referenced[i] = true;
+            return values[i];
+        }
+
+        synchronized void put(long hash, int id) {
+            values[slotOf(hash)] = id;
+        }
+
+        @Override
+        void move(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        void clear(int i) {
+            values[i] = 0;
+        }
+    }
+
+    private NodeDictionaryCache(int maxSize) {
+        this.maxSize = Math.max(SEGMENTS, maxSize);
+    }
+
+    /**
+     * Gets the shared cache, sized with swb/rdbNodeCacheSize entries per table.
+     *
+     * @return the cache
+     */
+    public static NodeDictionaryCache getInstance() {
+        NodeDictionaryCache ret = instance;
+        if (ret == null) {
+            synchronized (NodeDictionaryCache.class) {
+                ret = instance;
+                if (ret == null) {
+                    ret = new NodeDictionaryCache(Integer.parseInt(SWBPlatform.getEnv("swb/rdbNodeCacheSize", "100000")));
+                    instance = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Resolves a long object by ID through the cache, used by the drivers in place of <code>IDtoLongObject</code>.
+     *
+     * @param sql    SQL cache of the driver
+     * @param table  long object table
+     * @param id     object ID
+     * @param loader lookup of the object in the database
+     * @return the long object or null.
+     */
+    static RDBLongObject getLongObject(SQLCache sql, String table, int id, IntFunction<RDBLongObject> loader) {
+        NodeDictionaryCache cache = getInstance();
+        Table t = cache.tables.get(table);
+        RDBLongObject ret = t != null ? t.get(id) : null;
+        if (ret != null) {
+            cache.hits.incrementAndGet();
+            return ret;
+        }
+        cache.misses.incrementAndGet();
+        ret = loader.apply(id);
+        if (ret != null && isCommitted(sql)) {
+            cache.table(table).put(id, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Resolves the ID of a long object through the cache, used by the drivers in place of
+     * <code>getLongObjectID</code>. Inside a transaction the ID is not cached, the row may have
+     * been added by this call and still be rolled back.
+     *
+     * @param sql    SQL cache of the driver
+     * @param table  long object table
+     * @param lobj   the long object
+     * @param add    whether to add the object if it does not exist
+     * @param lookup lookup of the ID in the database
+     * @return the ID or null.
+     */
+    static DBIDInt getLongObjectID(SQLCache sql, String table, RDBLongObject lobj, boolean add, IdLookup lookup) {
+        NodeDictionaryCache cache = getInstance();
+        Table t = cache.tables.get(table);
+        int id = t != null ? t.getId(lobj) : -1;
+        if (id > 0) {
+            cache.hits.incrementAndGet();
+            return new DBIDInt(id);
+        }
+        cache.misses.incrementAndGet();
+        DBIDInt ret = lookup.apply(lobj, table, add);
+        if (ret != null && ret.getIntID() > 0 && isCommitted(sql)) {
+            cache.table(table).put(ret.getIntID(), lobj);
+        }
+        return ret;
+    }
+
+    /**
+     * Removes all long objects from the local cache.
+     */
+    public void clear() {
+        tables.clear();
+    }
+
+    /**
+     * Removes all long objects from the cache of this and the other nodes of the cluster.
+     */
+    public void invalidateCluster() {
+        clear();
+        SWBMessageCenter center = SWBPlatform.getMessageCenter();
+        if (center != null) {
+            center.sendMessage(CLEAR_MESSAGE);
+        }
+    }
+
+    /**
+     * Gets the number of lookups resolved by the cache.
+     * @return number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups not resolved by the cache.
+     * @return number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Table table(String table) {
+        return tables.computeIfAbsent(table, k -> new Table());
+    }
+
+    /**
+     * Checks if the statements of the driver are committed as they run, rows read inside an open
+     * transaction may be rolled back.
+     */
+    private static boolean isCommitted(SQLCache sql) {
+        try {
+            return sql instanceof SQLCache_SWBBase && ((SQLCache_SWBBase) sql).isAutoCommit();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean same(RDBLongObject a, RDBLongObject b) {
+        return a.hasTail == b.hasTail && a.head.equals(b.head) && (!a.hasTail || a.tail.equals(b.tail));
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the head and tail of a long object.
+     */
+    private static long hash(RDBLongObject lobj) {
+        long h = 0xcbf29ce484222325L;
+        String head = lobj.head;
+        for (int i = 0; i < head.length(); i++) {
+            h ^= head.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        if (lobj.hasTail) {
+            h ^= 0xff;
+            h *= 0x100000001b3L;
+            String tail = lobj.tail;
+            for (int i = 0; i < tail.length(); i++) {
+                h ^= tail.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -24,14 +24,26 @@
 package com.hp.hpl.jena.db.impl;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.semanticwb.Logger;
 import org.semanticwb.SWBPlatform;
@@ -53,7 +65,185 @@ public class SQLCache_SWB extends SQLCache_SWBBase implements ThreadObserver {
     /** The log. */
     private static final Logger log = SWBUtils.getLogger(SQLCache_SWB.class);
 
-    ConcurrentHashMap<Long, Connection> thcon = new ConcurrentHashMap<>();
+    /** Reaper of the leases of all the caches. */
+    private static ScheduledExecutorService reaper = null;
+
+    /** Caches created, weakly referenced so the reaper does not keep them alive. */
+    private static final Set<SQLCache_SWB> instances = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<SQLCache_SWB, Boolean>()));
+
+    /** Connection leased by the current thread. */
+    private final ThreadLocal<Lease> thlease = new ThreadLocal<>();
+
+    /** Depth of the scopes opened by the current thread. */
+    private final ThreadLocal<int[]> thscopes = ThreadLocal.withInitial(() -> new int[1]);
+
+    /** Leases not yet released, checked for leaks. */
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+
+    /** Captures the stack of each lease to report leaks. */
+    private final boolean leakDetection;
+
+    /** Time a lease may be held before it is reported as a leak. */
+    private final long leaseTimeout;
+
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicLong leaseWait = new AtomicLong();
+    private final AtomicLong maxLeaseWait = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    /** Max idle statements cached per connection, 0 disables the cache. */
+    private final int statementCacheSize;
+
+    private final AtomicLong prepares = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Connection leased by a thread and its prepared statements. The lease is released by
+     * {@link #notifyEnd()}, by closing the outermost {@link ConnectionScope}, or by the reaper once its thread ended.
+     */
+    private static final class Lease {
+        final Connection connection;
+        final WeakReference<Thread> owner;
+        final String threadName;
+        final long created = System.currentTimeMillis();
+        final Throwable stack;
+        StatementCache statements;
+        boolean reported = false;
+        volatile boolean released = false;
+
+        Lease(Connection connection, Thread owner, Throwable stack) {
+            this.connection = connection;
+            this.owner = new WeakReference<>(owner);
+            this.threadName = owner.getName();
+            this.stack = stack;
+        }
+    }
+
+    /**
+     * Request scope of the thread connection, the connection is leased on first use and released when the
+     * outermost scope of the thread is closed.
+     * <pre>
+     * try (SQLCache_SWB.ConnectionScope scope = cache.openScope()) {
+     *     ...
+     * }
+     * </pre>
+     */
+    public final class ConnectionScope implements AutoCloseable {
+        private final Lease outer;
+        private boolean closed = false;
+
+        private ConnectionScope(Lease outer) {
+            this.outer = outer;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            int[] depth = thscopes.get();
+            if (--depth[0] <= 0) {
+                thscopes.remove();
+                Lease lease = thlease.get();
+                if (lease != null && lease != outer) {
+                    release(lease);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scopes of the current thread in all the caches, see {@link #openThreadScope()}.
+     */
+    public static final class ThreadScope implements AutoCloseable {
+        private final List<ConnectionScope> scopes;
+
+        private ThreadScope(List<ConnectionScope> scopes) {
+            this.scopes = scopes;
+        }
+
+        @Override
+        public void close() {
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                scopes.get(i).close();
+            }
+        }
+    }
+
+    /**
+     * Prepared statements of a connection by op name and attributes. Statements are checked out while in use,
+     * so nested iterators of the same op never share a statement, and idle ones are evicted in LRU order.
+     */
+    private static final class StatementCache {
+        final Connection connection;
+        private final LinkedHashMap<String, PreparedStatement> idle;
+        private final IdentityHashMap<PreparedStatement, String> inUse = new IdentityHashMap<>();
+
+        StatementCache(Connection connection, final int maxSize) {
+            this.connection = connection;
+            this.idle = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > maxSize) {
+                        closeStatement(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized PreparedStatement checkout(String key) {
+            PreparedStatement ps = idle.remove(key);
+            if (ps != null) {
+                try {
+                    ps.clearParameters();
+                    inUse.put(ps, key);
+                } catch (SQLException e) {
+                    closeStatement(ps);
+                    ps = null;
+                }
+            }
+            return ps;
+        }
+
+        synchronized void track(PreparedStatement ps, String key) {
+            inUse.put(ps, key);
+        }
+
+        /**
+         * Returns a statement to the cache.
+         * @return false if the statement is not cached and must be closed.
+         */
+        synchronized boolean checkin(PreparedStatement ps) {
+            String key = inUse.remove(ps);
+            if (key == null || idle.containsKey(key)) {
+                return false;
+            }
+            idle.put(key, ps);
+            return true;
+        }
+
+        synchronized void close() {
+            for (PreparedStatement ps : idle.values()) {
+                closeStatement(ps);
+            }
+            idle.clear();
+            inUse.clear();
+        }
+
+        private static void closeStatement(PreparedStatement ps) {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+                log.debug("Problem closing cached statement:" + e.getMessage());
+            }
+        }
+    }
 
     /**
      * Constructor. Creates a new cache sql statements for interfacing to
@@ -71,43 +261,211 @@ public class SQLCache_SWB extends SQLCache_SWBBase implements ThreadObserver {
     public SQLCache_SWB(String sqlFile, Properties defaultOps, IDBConnection connection, String idType) throws IOException {
         super(sqlFile, defaultOps, connection, idType);
         setCachePreparedStatements(false);
+        statementCacheSize = Integer.parseInt(SWBPlatform.getEnv("swb/rdbStatementCacheSize", "64"));
+        leakDetection = Boolean.parseBoolean(SWBPlatform.getEnv("swb/rdbLeakDetection", "false"));
+        leaseTimeout = Long.parseLong(SWBPlatform.getEnv("swb/rdbLeaseTimeout", "300000"));
+        instances.add(this);
+        startReaper(Math.max(1000, Math.min(60000, leaseTimeout / 2)));
         SWBPlatform.createInstance().registerThreadObserver(this);
     }
 
-    private Connection getThreadConnection() {
-        long th = Thread.currentThread().getId();
-        Connection con = thcon.get(th);
-        if (con == null) {
-            String name = Thread.currentThread().getName();
-            if (!name.equals(SWBPlatform.getThreadName())) {
-                con = SWBUtils.DB.getDefaultConnection(name);
-            } else {
-                con = SWBUtils.DB.getDefaultPool().newAutoConnection();
+    /**
+     * Starts the reaper shared by all the caches.
+     */
+    private static synchronized void startReaper(long period) {
+        if (reaper == null) {
+            reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "SQLCacheLeaseReaper");
+                t.setDaemon(true);
+                return t;
+            });
+            reaper.scheduleWithFixedDelay(SQLCache_SWB::checkAllLeases, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void checkAllLeases() {
+        List<SQLCache_SWB> list;
+        synchronized (instances) {
+            list = new ArrayList<>(instances);
+        }
+        for (SQLCache_SWB cache : list) {
+            cache.checkLeases();
+        }
+    }
+
+    /**
+     * Opens a request scope, the thread connection is leased on first use until the scope is closed.
+     * Scopes can be nested, a connection leased before the scope is kept until {@link #notifyEnd()}.
+     *
+     * @return the scope
+     */
+    public ConnectionScope openScope() {
+        int[] depth = thscopes.get();
+        Lease outer = null;
+        if (depth[0] == 0) {
+            Lease lease = thlease.get();
+            if (lease != null && !lease.released) {
+                outer = lease;
             }
-            thcon.put(th, con);
         }
-        return con;
+        depth[0]++;
+        return new ConnectionScope(outer);
     }
 
-    private void returnThreadConnection(Connection con) {
-        //Nada que hacer
+    /**
+     * Opens a scope of the current thread in all the caches, worker pools run their tasks in a thread scope so
+     * the connections leased by a task are released when it ends.
+     * <pre>
+     * try (SQLCache_SWB.ThreadScope scope = SQLCache_SWB.openThreadScope()) {
+     *     ...
+     * }
+     * </pre>
+     *
+     * @return the scope
+     */
+    public static ThreadScope openThreadScope() {
+        List<SQLCache_SWB> list;
+        synchronized (instances) {
+            list = new ArrayList<>(instances);
+        }
+        List<ConnectionScope> scopes = new ArrayList<>(list.size());
+        for (SQLCache_SWB cache : list) {
+            scopes.add(cache.openScope());
+        }
+        return new ThreadScope(scopes);
     }
 
-    private void closeThreadConnection() {
-        long th = Thread.currentThread().getId();
-        Connection con = thcon.remove(th);
+    private Connection getThreadConnection() {
+        return getLease().connection;
+    }
+
+    private Lease getLease() {
+        Lease lease = thlease.get();
+        if (lease == null || lease.released) {
+            lease = acquire();
+        }
+        return lease;
+    }
+
+    /**
+     * Statements run on the connection leased by the thread.
+     */
+    @Override
+    public boolean isAutoCommit() throws SQLException {
+        return getThreadConnection().getAutoCommit();
+    }
+
+    /**
+     * Leases a connection to the current thread.
+     */
+    private Lease acquire() {
+        Thread thread = Thread.currentThread();
+        String name = thread.getName();
+        long start = System.nanoTime();
+        Connection con;
+        if (!name.equals(SWBPlatform.getThreadName())) {
+            con = SWBUtils.DB.getDefaultConnection(name);
+        } else {
+            con = SWBUtils.DB.getDefaultPool().newAutoConnection();
+        }
+        long wait = (System.nanoTime() - start) / 1000;
+        leased.incrementAndGet();
+        leaseWait.addAndGet(wait);
+        long max = maxLeaseWait.get();
+        while (wait > max && !maxLeaseWait.compareAndSet(max, wait)) {
+            max = maxLeaseWait.get();
+        }
+
+        Lease lease = new Lease(con, thread, leakDetection ? new Throwable("Connection leased by " + name) : null);
+        thlease.set(lease);
+        leases.add(lease);
+        return lease;
+    }
+
+    /**
+     * Releases a lease closing its statements and connection, may be called from the reaper thread.
+     */
+    private void release(Lease lease) {
+        synchronized (lease) {
+            if (lease.released) {
+                return;
+            }
+            lease.released = true;
+        }
+        leases.remove(lease);
+        if (thlease.get() == lease) {
+            thlease.remove();
+        }
+        if (lease.statements != null) {
+            lease.statements.close();
+        }
         try {
-            if (con != null) {
-                if (con instanceof AutoConnection) {
-                    log.error("Autoconnection is closing in thread:" + Thread.currentThread().getName());
+            if (lease.connection != null) {
+                if (lease.connection instanceof AutoConnection) {
+                    log.error("Autoconnection is closing in thread:" + lease.threadName);
                 }
-                con.close();
+                lease.connection.close();
             }
         } catch (Exception e) {
             log.error(e);
         }
     }
 
+    /**
+     * Reclaims the leases of finished threads and reports the leases held longer than the lease timeout.
+     */
+    private void checkLeases() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leases) {
+            try {
+                Thread owner = lease.owner.get();
+                if (owner == null || !owner.isAlive()) {
+                    reclaimed.incrementAndGet();
+                    log.warn("Reclaiming connection of finished thread:" + lease.threadName, lease.stack);
+                    release(lease);
+                } else if (!lease.reported && now - lease.created > leaseTimeout) {
+                    lease.reported = true;
+                    leaks.incrementAndGet();
+                    if (lease.stack != null) {
+                        log.warn("Connection leased for " + (now - lease.created) + "ms by thread:" + lease.threadName, lease.stack);
+                    } else {
+                        log.warn("Connection leased for " + (now - lease.created) + "ms by thread:" + lease.threadName
+                                + ", set swb/rdbLeakDetection to capture the stack");
+                    }
+                }
+            } catch (Exception e) {
+                log.error(e);
+            }
+        }
+    }
+
+    private void returnThreadConnection(Connection con) {
+        //Nada que hacer, la conexion se libera con el lease
+    }
+
+    /**
+     * Gets the statement cache of the thread connection.
+     *
+     * @return the cache or null if it is disabled.
+     */
+    private StatementCache getStatementCache() {
+        if (statementCacheSize <= 0) {
+            return null;
+        }
+        Lease lease = getLease();
+        if (lease.statements == null) {
+            lease.statements = new StatementCache(lease.connection, statementCacheSize);
+        }
+        return lease.statements;
+    }
+
+    private void closeThreadConnection() {
+        Lease lease = thlease.get();
+        if (lease != null) {
+            release(lease);
+        }
+    }
+
 
     /**
      * Gets the stack trace.
@@ -140,6 +498,7 @@ public class SQLCache_SWB extends SQLCache_SWBBase implements ThreadObserver {
         }
 
         Connection con = getThreadConnection();
+        prepares.incrementAndGet();
         return con.prepareStatement(sql);
     }
 
@@ -194,6 +553,16 @@ public class SQLCache_SWB extends SQLCache_SWBBase implements ThreadObserver {
             throw new JenaException("Too many arguments");
         }
 
+        StatementCache cache = getStatementCache();
+        if (cache != null) {
+            ps = cache.checkout(aop);
+            if (ps != null) {
+                hits.incrementAndGet();
+                return ps;
+            }
+            misses.incrementAndGet();
+        }
+
         List<PreparedStatement> psl = m_preparedStatements.get(aop);
         // OVERRIDE: added proper PreparedStatement removal.
         if (psl != null && !psl.isEmpty()) {
@@ -214,6 +583,9 @@ public class SQLCache_SWB extends SQLCache_SWBBase implements ThreadObserver {
                 m_preparedStatements.put(aop, psl);
             }
             ps = doPrepareSQLStatement(sql);
+            if (cache != null && ps != null) {
+                cache.track(ps, aop);
+            }
         }
         if (CACHE_PREPARED_STATEMENTS) {
             m_cachedStmtInUse.put(ps, psl);
@@ -289,6 +661,11 @@ public class SQLCache_SWB extends SQLCache_SWBBase implements ThreadObserver {
     public void returnPreparedSQLStatement(PreparedStatement ps) {
         try {
             Connection con = ps.getConnection();
+            Lease lease = thlease.get();
+            StatementCache cache = lease != null && !lease.released ? lease.statements : null;
+            if (cache != null && cache.connection == con && cache.checkin(ps)) {
+                return;
+            }
             ps.close();
             if (con != getConnection()) {
                 returnThreadConnection(con);
@@ -329,4 +706,97 @@ public class SQLCache_SWB extends SQLCache_SWBBase implements ThreadObserver {
     public void notifyEnd() {
         closeThreadConnection();
     }
+
+    /**
+     * Gets the number of connections currently leased.
+     *
+     * @return number of leases
+     */
+    public int getActiveLeases() {
+        return leases.size();
+    }
+
+    /**
+     * Gets the number of connections leased.
+     *
+     * @return number of leases
+     */
+    public long getLeaseCount() {
+        return leased.get();
+    }
+
+    /**
+     * Gets the average time waited for a connection of the pool.
+     *
+     * @return time in microseconds
+     */
+    public long getAverageLeaseWait() {
+        long n = leased.get();
+        return n > 0 ? leaseWait.get() / n : 0;
+    }
+
+    /**
+     * Gets the longest time waited for a connection of the pool.
+     *
+     * @return time in microseconds
+     */
+    public long getMaxLeaseWait() {
+        return maxLeaseWait.get();
+    }
+
+    /**
+     * Gets the number of leases held longer than swb/rdbLeaseTimeout.
+     *
+     * @return number of leases
+     */
+    public long getLeakedLeases() {
+        return leaks.get();
+    }
+
+    /**
+     * Gets the number of leases reclaimed from finished threads.
+     *
+     * @return number of leases
+     */
+    public long getReclaimedLeases() {
+        return reclaimed.get();
+    }
+
+    /**
+     * Gets the number of statements prepared on the database.
+     *
+     * @return number of statements
+     */
+    public long getPreparedCount() {
+        return prepares.get();
+    }
+
+    /**
+     * Gets the number of statements reused from the statement cache.
+     *
+     * @return number of statements
+     */
+    public long getStatementCacheHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of statements not found in the statement cache.
+     *
+     * @return number of statements
+     */
+    public long getStatementCacheMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the hit rate of the statement cache.
+     *
+     * @return rate between 0 and 1
+     */
+    public double getStatementCacheHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0;
+    }
 }
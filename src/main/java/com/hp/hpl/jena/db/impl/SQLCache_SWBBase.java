@@ -39,6 +39,16 @@ public class SQLCache_SWBBase extends SQLCache {
         m_cachedStmtInUse = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Checks if the statements of this cache are committed as soon as they run.
+     *
+     * @return true if the connection of the statements is in autocommit mode
+     * @throws SQLException the sQL exception
+     */
+    public boolean isAutoCommit() throws SQLException {
+        return getConnection().getAutoCommit();
+    }
+
     /**
      * Flush the cache of all currently prepared statements.
      */
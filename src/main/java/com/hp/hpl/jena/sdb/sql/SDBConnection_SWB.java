@@ -28,13 +28,16 @@ import com.hp.hpl.jena.sdb.core.Gensym;
 import com.hp.hpl.jena.sdb.core.SDBConstants;
 import com.hp.hpl.jena.shared.Command;
 import org.semanticwb.Logger;
+import org.semanticwb.SWBPlatform;
 import org.semanticwb.SWBUtils;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.Locale;
 
 import static java.sql.ResultSet.CONCUR_READ_ONLY;
 import static java.sql.ResultSet.TYPE_FORWARD_ONLY;
@@ -82,6 +85,53 @@ public class SDBConnection_SWB extends SDBConnection {
     /** The this log sql queries. */
     private boolean thisLogSQLQueries = logSQLQueries;
 
+    /** Fetch size of the queries without one, resolved from the database type. */
+    private volatile Integer defaultFetchSize = null;
+
+    /** Whether cursors need a connection without autocommit to stream rows (PostgreSQL). */
+    private volatile boolean cursorNeedsTransaction = false;
+
+    /**
+     * Result set that closes its statement and returns its connection to the pool when closed.
+     */
+    private static final class PooledResultSetJDBC extends ResultSetJDBC {
+        private final Statement statement;
+        private final Connection conn;
+        private final boolean restoreAutoCommit;
+        private final boolean streaming;
+        private boolean closed = false;
+
+        PooledResultSetJDBC(Statement s, ResultSet rs, Connection conn, boolean restoreAutoCommit, boolean streaming) {
+            super(s, rs);
+            this.statement = s;
+            this.conn = conn;
+            this.restoreAutoCommit = restoreAutoCommit;
+            this.streaming = streaming;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (streaming && !get().isAfterLast()) {
+                    //Connector/J reads the remaining rows of a streamed result set on close, cancels the query
+                    //so an abandoned scan ends without transferring the rest of the table
+                    statement.cancel();
+                }
+            } catch (SQLException e) {
+                LOG.debug("Streamed query not cancelled", e);
+            }
+            try {
+                super.close();
+            } finally {
+                release(conn, restoreAutoCommit);
+            }
+        }
+    }
+
     /**
      * Instantiates a new sDB connection_swb.
      */
@@ -146,7 +196,7 @@ public class SDBConnection_SWB extends SDBConnection {
      */
     @Override
     public ResultSetJDBC execQuery(String sqlString) throws SQLException {
-        return execQuery(sqlString, SDBConstants.jdbcFetchSizeOff);
+        return execQuery("execQuery", sqlString, null);
     }
 
     /**
@@ -159,20 +209,45 @@ public class SDBConnection_SWB extends SDBConnection {
      */
     @Override
     public ResultSetJDBC execQuery(String sqlString, int fetchSize) throws SQLException {
-        if (loggingSQLStatements() || loggingSQLQueries())
-            writeLog("execQuery", sqlString);
+        return execQuery("execQuery", sqlString, fetchSize);
+    }
 
-        Connection conn = getPoolConnection();
+    /**
+     * Executes a query with a forward only cursor, the rows are streamed with the fetch size
+     * and the statement and connection are released when the result set is closed.
+     *
+     * @param op        operation name for the log
+     * @param sqlString the sql string
+     * @param fetchSize the fetch size, null for the default of the database
+     * @return the result set jdbc
+     * @throws SQLException the sQL exception
+     */
+    private ResultSetJDBC execQuery(String op, String sqlString, Integer fetchSize) throws SQLException {
+        if (loggingSQLStatements() || loggingSQLQueries()) {
+            writeLog(op, sqlString);
+        }
 
-        try (Statement s = conn.createStatement(TYPE_FORWARD_ONLY, CONCUR_READ_ONLY)) {
-            if (fetchSize != SDBConstants.jdbcFetchSizeOff) {
-                s.setFetchSize(fetchSize);
+        Connection conn = getPoolConnection();
+        Statement s = null;
+        boolean restoreAutoCommit = false;
+        try {
+            int size = fetchSize != null ? fetchSize : getDefaultFetchSize(conn);
+            if (size != SDBConstants.jdbcFetchSizeOff && size > 0 && cursorNeedsTransaction && conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            s = conn.createStatement(TYPE_FORWARD_ONLY, CONCUR_READ_ONLY);
+            if (size != SDBConstants.jdbcFetchSizeOff) {
+                s.setFetchSize(size);
+            }
+            return new PooledResultSetJDBC(s, s.executeQuery(sqlString), conn, restoreAutoCommit,
+                    size == Integer.MIN_VALUE);
+        } catch (SQLException | RuntimeException ex) {
+            closeStatement(s);
+            release(conn, restoreAutoCommit);
+            if (ex instanceof SQLException) {
+                exception(op, (SQLException) ex, sqlString);
             }
-            return new ResultSetJDBC(s, s.executeQuery(sqlString));
-        } catch (SQLException ex) {
-            exception("execQuery", ex, sqlString);
-            throw ex;
-        } catch (RuntimeException ex) {
             throw ex;
         }
     }
@@ -226,8 +301,7 @@ public class SDBConnection_SWB extends SDBConnection {
             writeLog("execUpdate", sqlString);
         }
 
-        Connection conn = getPoolConnection();
-        try (Statement s = conn.createStatement()) {
+        try (Connection conn = getPoolConnection(); Statement s = conn.createStatement()) {
             return s.executeUpdate(sqlString);
         } catch (SQLException ex) {
             exception("execUpdate", ex, sqlString);
@@ -249,13 +323,26 @@ public class SDBConnection_SWB extends SDBConnection {
         }
 
         Connection conn = getPoolConnection();
-        try (Statement s = conn.createStatement()) {
+        Statement s = null;
+        try {
+            s = conn.createStatement(TYPE_FORWARD_ONLY, CONCUR_READ_ONLY);
+            int size = getDefaultFetchSize(conn);
+            boolean fetch = size != SDBConstants.jdbcFetchSizeOff && !cursorNeedsTransaction;
+            if (fetch) {
+                s.setFetchSize(size);
+            }
             if (s.execute(sqlString)) {
-                return new ResultSetJDBC(s, s.getResultSet());
+                return new PooledResultSetJDBC(s, s.getResultSet(), conn, false, fetch && size == Integer.MIN_VALUE);
             }
+            closeStatement(s);
+            release(conn, false);
             return null;
-        } catch (SQLException ex) {
-            exception("exec", ex, sqlString);
+        } catch (SQLException | RuntimeException ex) {
+            closeStatement(s);
+            release(conn, false);
+            if (ex instanceof SQLException) {
+                exception("exec", (SQLException) ex, sqlString);
+            }
             throw ex;
         }
     }
@@ -273,14 +360,18 @@ public class SDBConnection_SWB extends SDBConnection {
         }
 
         Connection conn = getPoolConnection();
-        try (Statement s = conn.createStatement()) {
+        Statement s = null;
+        try {
+            s = conn.createStatement(TYPE_FORWARD_ONLY, CONCUR_READ_ONLY);
             if (s.execute(sqlString)) {
-                return new ResultSetJDBC(s, s.getResultSet());
+                return new PooledResultSetJDBC(s, s.getResultSet(), conn, false, false);
             }
-            return null;
         } catch (SQLException ex) {
-            return null;
+            //Silent
         }
+        closeStatement(s);
+        release(conn, false);
+        return null;
     }
 
     /**
@@ -366,6 +457,75 @@ public class SDBConnection_SWB extends SDBConnection {
         return SWBUtils.DB.getDefaultConnection();
     }
 
+    /**
+     * Gets the fetch size of the queries executed without one. Uses swb/sdbFetchSize if it is set,
+     * otherwise a size that makes the driver stream the rows instead of buffering the whole result set.
+     *
+     * @param conn a connection of the pool
+     * @return the fetch size
+     */
+    private int getDefaultFetchSize(Connection conn) {
+        Integer ret = defaultFetchSize;
+        if (ret == null) {
+            String product = "";
+            try {
+                product = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            } catch (Exception e) {
+                LOG.debug("Database product not available", e);
+            }
+            String conf = SWBPlatform.getEnv("swb/sdbFetchSize", null);
+            if (conf != null) {
+                ret = Integer.parseInt(conf.trim());
+            } else if (product.contains("mysql") || product.contains("mariadb")) {
+                //Connector/J only streams rows with this fetch size and a forward only, read only statement
+                ret = Integer.MIN_VALUE;
+            } else if (product.contains("postgres")) {
+                ret = 1000;
+            } else if (product.contains("oracle")) {
+                ret = 500;
+            } else if (product.contains("microsoft")) {
+                ret = 1000;
+            } else {
+                ret = SDBConstants.jdbcFetchSizeOff;
+            }
+            cursorNeedsTransaction = product.contains("postgres");
+            defaultFetchSize = ret;
+        }
+        return ret;
+    }
+
+    private static void closeStatement(Statement s) {
+        if (s != null) {
+            try {
+                s.close();
+            } catch (SQLException e) {
+                LOG.error(e);
+            }
+        }
+    }
+
+    /**
+     * Returns a connection to the pool.
+     */
+    private static void release(Connection conn, boolean restoreAutoCommit) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            if (restoreAutoCommit) {
+                conn.commit();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOG.error(e);
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            LOG.error(e);
+        }
+    }
+
     /**
      * Close.
      */
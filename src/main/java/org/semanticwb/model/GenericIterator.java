@@ -28,6 +28,7 @@ import org.semanticwb.Logger;
 import org.semanticwb.SWBRuntimeException;
 import org.semanticwb.SWBUtils;
 import org.semanticwb.platform.SemanticObject;
+import org.semanticwb.platform.SemanticPrefetchIterator;
 
 import java.util.Iterator;
 
@@ -64,7 +65,18 @@ public class GenericIterator<T extends GenericObject> implements Iterator {
      * @param invert   the invert
      */
     public GenericIterator(Iterator iterator, boolean invert) {
-        this.iterator = iterator;
+        this(iterator, invert, false);
+    }
+
+    /**
+     * Instantiates a new generic iterator.
+     *
+     * @param iterator the iterator
+     * @param invert   the invert
+     * @param prefetch whether to load the objects in batches, for callers that consume the whole iterator.
+     */
+    public GenericIterator(Iterator iterator, boolean invert, boolean prefetch) {
+        this.iterator = prefetch ? SemanticPrefetchIterator.wrap(iterator, invert) : iterator;
         this.invert = invert;
     }
 
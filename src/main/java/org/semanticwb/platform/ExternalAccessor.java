@@ -0,0 +1,181 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import org.semanticwb.Logger;
+import org.semanticwb.SWBUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accessor of an external invocation {@link SemanticProperty} on a {@link org.semanticwb.model.GenericObject} class.
+ * <p>
+ * The getter and setter methods are resolved once and invoked through {@link MethodHandle}s adapted to a generic
+ * signature. Setters are resolved on their first call from the type of the values, once per number of values.
+ *
+ * @author javier.solis.g
+ */
+final class ExternalAccessor {
+    private static final Logger LOG = SWBUtils.getLogger(ExternalAccessor.class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final Map<Class<?>, Class<?>> WRAPPER_TO_PRIMITIVE = new HashMap<>();
+
+    static {
+        WRAPPER_TO_PRIMITIVE.put(Boolean.class, Boolean.TYPE);
+        WRAPPER_TO_PRIMITIVE.put(Byte.class, Byte.TYPE);
+        WRAPPER_TO_PRIMITIVE.put(Short.class, Short.TYPE);
+        WRAPPER_TO_PRIMITIVE.put(Character.class, Character.TYPE);
+        WRAPPER_TO_PRIMITIVE.put(Integer.class, Integer.TYPE);
+        WRAPPER_TO_PRIMITIVE.put(Long.class, Long.TYPE);
+        WRAPPER_TO_PRIMITIVE.put(Float.class, Float.TYPE);
+        WRAPPER_TO_PRIMITIVE.put(Double.class, Double.TYPE);
+    }
+
+    private final Class<?> cls;
+    private final SemanticProperty prop;
+    private volatile MethodHandle getter;
+    private volatile MethodHandle setter1;
+    private volatile MethodHandle setter2;
+
+    /**
+     * Creates the accessor of a property on a class.
+     *
+     * @param cls  GenericObject class
+     * @param prop the property
+     */
+    ExternalAccessor(Class<?> cls, SemanticProperty prop) {
+        this.cls = cls;
+        this.prop = prop;
+    }
+
+    /**
+     * Invokes the getter of the property.
+     *
+     * @param obj the GenericObject
+     * @return the value, null if the getter could not be invoked.
+     */
+    Object get(Object obj) {
+        MethodHandle mh = getter;
+        if (mh == null) {
+            mh = resolveGetter();
+            if (mh == null) {
+                return null;
+            }
+            getter = mh;
+        }
+        try {
+            return (Object) mh.invokeExact(obj);
+        } catch (Throwable e) {
+            LOG.error("Error invoking getter of " + prop + " on " + cls.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Invokes the setter of the property. Localeable properties receive the value and the language,
+     * other properties receive only the first value.
+     *
+     * @param obj    the GenericObject
+     * @param values the values
+     * @return the result of the setter, null if the setter could not be invoked.
+     */
+    Object set(Object obj, Object... values) {
+        boolean two = prop.isLocaleable() && values.length > 1;
+        MethodHandle mh = two ? setter2 : setter1;
+        if (mh == null) {
+            mh = resolveSetter(values, two ? 2 : 1);
+            if (mh == null) {
+                return null;
+            }
+            if (two) {
+                setter2 = mh;
+            } else {
+                setter1 = mh;
+            }
+        }
+        try {
+            if (two) {
+                return (Object) mh.invokeExact(obj, values[0], values[1]);
+            }
+            return (Object) mh.invokeExact(obj, values[0]);
+        } catch (Throwable e) {
+            LOG.error("Error invoking setter of " + prop + " on " + cls.getName(), e);
+            return null;
+        }
+    }
+
+    private MethodHandle resolveGetter() {
+        String name = (prop.isBoolean() ? "is" : "get") + capitalize(codeName());
+        try {
+            Method method = cls.getMethod(name);
+            return LOOKUP.unreflect(method).asType(MethodType.genericMethodType(1));
+        } catch (Exception e) {
+            LOG.error(e);
+            return null;
+        }
+    }
+
+    private MethodHandle resolveSetter(Object[] values, int arity) {
+        String name = "set" + capitalize(codeName());
+        Class<?>[] types = new Class<?>[arity];
+        Object o = values[0];
+        if (o != null) {
+            types[0] = o.getClass();
+        } else if (prop.isString()) {
+            types[0] = String.class;
+        } else if (prop.isDate()) {
+            types[0] = Date.class;
+        } else if (prop.isObjectProperty()) {
+            types[0] = prop.getDomainClass().getObjectClass();
+        }
+        Class<?> pri = WRAPPER_TO_PRIMITIVE.get(types[0]);
+        if (pri != null) {
+            types[0] = pri;
+        }
+        if (arity > 1) {
+            types[1] = values[1] == null ? String.class : values[1].getClass();
+        }
+        try {
+            Method method = cls.getMethod(name, types);
+            return LOOKUP.unreflect(method).asType(MethodType.genericMethodType(arity + 1));
+        } catch (Exception e) {
+            LOG.error(e);
+            return null;
+        }
+    }
+
+    private String codeName() {
+        String name = prop.getPropertyCodeName();
+        return name != null ? name : prop.getName();
+    }
+
+    private static String capitalize(String name) {
+        return name.substring(0, 1).toUpperCase() + name.substring(1);
+    }
+}
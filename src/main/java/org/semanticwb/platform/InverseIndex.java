@@ -0,0 +1,330 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reverse index of a {@link SemanticModel}, statements of the model are indexed by object URI and predicate.
+ * <p>
+ * Entries are loaded from the model the first time an object is requested, or in bulk while loading the full
+ * cache of the model, and then kept up to date by the {@link SemanticObject} write paths. Entries are only kept
+ * for objects present in the {@link SemanticObject} cache and are dropped when the object leaves the cache,
+ * entries left by objects evicted while their entry was being loaded are swept each time the index doubles.
+ * <p>
+ * Entries are loaded from the model outside the map lock, one load per URI at a time. Statements added or removed
+ * while an entry is being loaded are recorded and applied to the loaded entry, so they are never lost.
+ *
+ * @author javier.solis.g
+ */
+final class InverseIndex {
+    private static final int MIN_SWEEP = 1024;
+
+    private final SemanticModel model;
+    private final ConcurrentHashMap<String, StatementIndex> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Load> loads = new ConcurrentHashMap<>();
+    private final AtomicInteger sweepAt = new AtomicInteger(MIN_SWEEP);
+
+    /**
+     * Load in progress of an entry, with the changes made while the model is read.
+     */
+    private static final class Load {
+        final CompletableFuture<StatementIndex> result = new CompletableFuture<>();
+        final List<Statement> changes = new ArrayList<>();
+        final List<Boolean> added = new ArrayList<>();
+        boolean done = false;
+        boolean dropped = false;
+
+        /**
+         * Records a change while the entry is loading.
+         * @return false if the load already ended.
+         */
+        synchronized boolean record(Statement stmt, boolean add) {
+            if (done) {
+                return false;
+            }
+            changes.add(stmt);
+            added.add(add);
+            return true;
+        }
+    }
+
+    /**
+     * Creates the index of a model.
+     * @param model the model
+     */
+    InverseIndex(SemanticModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Gets the statements having the resource as object, loading them from the model if needed.
+     *
+     * @param res the resource
+     * @return the statements indexed by predicate.
+     */
+    StatementIndex get(Resource res) {
+        String uri = res.getURI();
+        StatementIndex idx = uri != null ? entries.get(uri) : null;
+        if (idx == null) {
+            if (uri == null || !isCached(uri)) {
+                return load(res);
+            }
+            Load load = new Load();
+            Load other = loads.putIfAbsent(uri, load);
+            if (other != null) {
+                //Another thread is loading the entry
+                return other.result.join();
+            }
+            idx = entries.get(uri);
+            if (idx != null) {
+                finish(uri, load, idx, false);
+            } else {
+                idx = load(uri, res, load, false);
+            }
+            sweep();
+        }
+        return idx;
+    }
+
+    /**
+     * Reloads the statements having the resource as object.
+     *
+     * @param res the resource
+     */
+    void reload(Resource res) {
+        String uri = res.getURI();
+        if (uri != null) {
+            if (isCached(uri)) {
+                Load load = new Load();
+                Load other = loads.put(uri, load);
+                if (other != null) {
+                    //The pending load may have missed the changes being reloaded
+                    drop(other);
+                }
+                load(uri, res, load, true);
+                sweep();
+            } else {
+                invalidate(uri);
+            }
+        }
+    }
+
+    /**
+     * Sets the statements having the object URI as object, used when loading the full cache.
+     *
+     * @param uri   object URI
+     * @param stmts the statements
+     */
+    void put(String uri, Collection<Statement> stmts) {
+        StatementIndex idx = new StatementIndex();
+        idx.addAll(stmts);
+        entries.put(uri, idx);
+    }
+
+    /**
+     * Adds a statement to the entry of its object, if the entry is loaded.
+     *
+     * @param stmt the statement
+     */
+    void add(Statement stmt) {
+        String uri = objectURI(stmt);
+        if (uri != null) {
+            Load load = loads.get(uri);
+            if (load != null && load.record(stmt, true)) {
+                return;
+            }
+            entries.computeIfPresent(uri, (k, idx) -> {
+                if (!idx.contains(stmt)) {
+                    idx.add(stmt);
+                }
+                return idx;
+            });
+        }
+    }
+
+    /**
+     * Removes a statement from the entry of its object, if the entry is loaded.
+     *
+     * @param stmt the statement
+     * @return true if the statement was removed.
+     */
+    boolean remove(Statement stmt) {
+        String uri = objectURI(stmt);
+        if (uri == null) {
+            return false;
+        }
+        Load load = loads.get(uri);
+        if (load != null && load.record(stmt, false)) {
+            return true;
+        }
+        boolean[] ret = new boolean[1];
+        entries.computeIfPresent(uri, (k, idx) -> {
+            ret[0] = idx.remove(stmt);
+            return idx;
+        });
+        return ret[0];
+    }
+
+    /**
+     * Drops the entry of an object.
+     *
+     * @param uri object URI
+     */
+    void invalidate(String uri) {
+        if (uri != null) {
+            Load load = loads.remove(uri);
+            if (load != null) {
+                drop(load);
+            }
+            entries.remove(uri);
+        }
+    }
+
+    /**
+     * Drops all entries.
+     */
+    void clear() {
+        for (Load load : loads.values()) {
+            drop(load);
+        }
+        loads.clear();
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of loaded entries.
+     * @return number of entries.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private static String objectURI(Statement stmt) {
+        RDFNode node = stmt.getObject();
+        if (node != null && node.isURIResource()) {
+            return node.asResource().getURI();
+        }
+        return null;
+    }
+
+    private static boolean isCached(String uri) {
+        return SemanticObject.getCache().contains(uri);
+    }
+
+    /**
+     * Drops the entries of objects no longer cached once the index doubles its size since the last sweep.
+     */
+    private void sweep() {
+        int at = sweepAt.get();
+        if (entries.size() > at && sweepAt.compareAndSet(at, Integer.MAX_VALUE)) {
+            try {
+                entries.keySet().removeIf(uri -> !isCached(uri));
+            } finally {
+                sweepAt.set(Math.max(MIN_SWEEP, entries.size() * 2));
+            }
+        }
+    }
+
+    /**
+     * Loads an entry outside the map lock and stores it with the changes recorded meanwhile.
+     */
+    private StatementIndex load(String uri, Resource res, Load load, boolean replace) {
+        StatementIndex idx;
+        try {
+            idx = load(res);
+        } catch (RuntimeException | Error e) {
+            synchronized (load) {
+                load.done = true;
+            }
+            loads.remove(uri, load);
+            load.result.completeExceptionally(e);
+            throw e;
+        }
+        return finish(uri, load, idx, replace);
+    }
+
+    /**
+     * Stores the entry and applies the recorded changes, the entry is stored before the load ends so changes
+     * not recorded find it in the map.
+     */
+    private StatementIndex finish(String uri, Load load, StatementIndex idx, boolean replace) {
+        synchronized (load) {
+            if (!load.dropped) {
+                if (replace) {
+                    entries.put(uri, idx);
+                } else {
+                    StatementIndex old = entries.putIfAbsent(uri, idx);
+                    idx = old != null ? old : idx;
+                }
+            }
+            for (int i = 0; i < load.changes.size(); i++) {
+                Statement stmt = load.changes.get(i);
+                if (!load.added.get(i)) {
+                    idx.remove(stmt);
+                } else if (!idx.contains(stmt)) {
+                    idx.add(stmt);
+                }
+            }
+            load.done = true;
+        }
+        loads.remove(uri, load);
+        load.result.complete(idx);
+        return idx;
+    }
+
+    /**
+     * Marks a pending load as not to be stored.
+     */
+    private static void drop(Load load) {
+        synchronized (load) {
+            load.dropped = true;
+        }
+    }
+
+    private StatementIndex load(Resource res) {
+        ArrayList<Statement> stmts = new ArrayList<>();
+        StmtIterator stit = model.getRDFModel().listStatements(null, null, res);
+        try {
+            while (stit.hasNext()) {
+                stmts.add(stit.next());
+            }
+        } finally {
+            stit.close();
+        }
+        //TODO: Revisar inversas de otros modelos
+        StatementIndex idx = new StatementIndex();
+        idx.addAll(stmts);
+        return idx;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free FIFO queue of the {@link SWBMessageCenter} incoming messages.
+ * <p>
+ * Ring buffer with a sequence per slot (Vyukov bounded queue), any number of producers and consumers.
+ * When the queue is full the {@link Policy} decides whether the new message or the oldest one is dropped.
+ * The queue keeps the count of dropped messages and the time messages wait before being consumed.
+ *
+ * @author javier.solis.g
+ */
+final class MessageQueue {
+
+    /**
+     * Behaviour when the queue is full.
+     */
+    enum Policy {
+        /** The incoming message is dropped. */
+        DROP_NEWEST,
+        /** The oldest message is dropped to make room for the incoming one. */
+        DROP_OLDEST
+    }
+
+    private final int mask;
+    private final AtomicReferenceArray<String> items;
+    private final AtomicLongArray sequences;
+    private final long[] times;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final Policy policy;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final Object signal = new Object();
+    private volatile int waiters = 0;
+
+    /**
+     * Creates a queue.
+     *
+     * @param capacity max number of messages, rounded up to a power of two
+     * @param policy   behaviour when the queue is full
+     */
+    MessageQueue(int capacity, Policy policy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.times = new long[size];
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a message.
+     *
+     * @param message the message
+     * @return false if a message was dropped.
+     */
+    boolean offer(String message) {
+        boolean ret = true;
+        while (!tryOffer(message)) {
+            ret = false;
+            if (policy == Policy.DROP_NEWEST) {
+                dropped.increment();
+                return false;
+            }
+            if (poll() != null) {
+                dropped.increment();
+            }
+        }
+        enqueued.increment();
+        if (waiters > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Removes the oldest message.
+     *
+     * @return the message or null if the queue is empty.
+     */
+    String poll() {
+        long pos = head.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long seq = sequences.get(i);
+            long diff = seq - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    String ret = items.get(i);
+                    long wait = System.nanoTime() - times[i];
+                    items.set(i, null);
+                    sequences.set(i, pos + mask + 1);
+                    dequeued.increment();
+                    waitNanos.add(wait);
+                    updateMax(wait);
+                    return ret;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Removes up to <code>max</code> messages without waiting.
+     *
+     * @param to  collection receiving the messages
+     * @param max max number of messages
+     * @return number of messages removed.
+     */
+    int drainTo(Collection<? super String> to, int max) {
+        int count = 0;
+        String message;
+        while (count < max && (message = poll()) != null) {
+            to.add(message);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Removes up to <code>max</code> messages, waiting for the first one up to a timeout.
+     *
+     * @param to      collection receiving the messages
+     * @param max     max number of messages
+     * @param timeout time to wait
+     * @param unit    time unit of the timeout
+     * @return number of messages removed, 0 if the timeout expired.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    int drainTo(Collection<? super String> to, int max, long timeout, TimeUnit unit) throws InterruptedException {
+        int count = drainTo(to, max);
+        if (count > 0 || max <= 0) {
+            return count;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (signal) {
+            waiters++;
+            try {
+                while ((count = drainTo(to, max)) == 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(signal, remaining);
+                }
+            } finally {
+                waiters--;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes all messages.
+     */
+    void clear() {
+        while (poll() != null) {
+            //drain
+        }
+    }
+
+    /**
+     * Gets the approximate number of messages.
+     * @return number of messages.
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    /**
+     * Gets the capacity of the queue.
+     * @return capacity.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the number of messages added.
+     * @return number of messages.
+     */
+    long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    /**
+     * Gets the number of messages dropped because the queue was full.
+     * @return number of messages.
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the average time messages waited in the queue.
+     * @return time in microseconds.
+     */
+    long getAverageWait() {
+        long count = dequeued.sum();
+        return count > 0 ? waitNanos.sum() / count / 1000 : 0;
+    }
+
+    /**
+     * Gets the max time a message waited in the queue.
+     * @return time in microseconds.
+     */
+    long getMaxWait() {
+        return maxWaitNanos.get() / 1000;
+    }
+
+    private boolean tryOffer(String message) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long seq = sequences.get(i);
+            long diff = seq - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.set(i, message);
+                    times[i] = System.nanoTime();
+                    //Publishes the slot to consumers
+                    sequences.set(i, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private void updateMax(long wait) {
+        long max = maxWaitNanos.get();
+        while (wait > max && !maxWaitNanos.compareAndSet(max, wait)) {
+            max = maxWaitNanos.get();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes a subject URI to the {@link SemanticModel}s that may contain it.
+ * <p>
+ * Subject URIs are indexed by prefix (up to the last <code>#</code>, or the last <code>/</code> when there is no
+ * <code>#</code>). URIs without a prefix are not indexed one by one, the models holding them are candidates for
+ * every URI without a prefix. A model is tracked once all its subjects have been registered, from then on it is
+ * only a candidate for the prefixes it holds. Models without a subject filter are tracked by their name spaces,
+ * their subjects of other name spaces are only found once registered by this node. Models that are not tracked
+ * are candidates for every URI.
+ *
+ * @author javier.solis.g
+ */
+final class ModelRoutingIndex {
+    private final ConcurrentHashMap<String, Set<SemanticModel>> routes = new ConcurrentHashMap<>();
+    private final Set<SemanticModel> unprefixed = ConcurrentHashMap.newKeySet();
+    private final Set<SemanticModel> untracked = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Gets the prefix of a URI.
+     *
+     * @param uri the URI
+     * @return the URI up to the last <code>#</code>, or the last <code>/</code> when there is no <code>#</code>,
+     * or null if the URI has neither.
+     */
+    static String prefix(String uri) {
+        int i = uri.lastIndexOf('#');
+        if (i == -1) {
+            i = uri.lastIndexOf('/');
+        }
+        return i > 0 ? uri.substring(0, i + 1) : null;
+    }
+
+    /**
+     * Registers a subject URI of a model.
+     *
+     * @param uri   the URI, null values are ignored.
+     * @param model the model
+     */
+    void add(String uri, SemanticModel model) {
+        if (uri == null) {
+            return;
+        }
+        addRoute(prefix(uri), model);
+    }
+
+    private void addRoute(String prefix, SemanticModel model) {
+        Set<SemanticModel> models = prefix != null ? routes.get(prefix) : unprefixed;
+        if (models == null) {
+            models = routes.computeIfAbsent(prefix, k -> ConcurrentHashMap.newKeySet());
+        }
+        if (!models.contains(model)) {
+            models.add(model);
+        }
+    }
+
+    /**
+     * Marks a model as not tracked, the model is a candidate for every URI.
+     *
+     * @param model the model
+     */
+    void untrack(SemanticModel model) {
+        untracked.add(model);
+    }
+
+    /**
+     * Tracks a model by its name spaces, the model is a candidate for the URIs of the name spaces and of the
+     * subjects registered later.
+     *
+     * @param model      the model
+     * @param namespaces the name spaces, ending in <code>#</code> or <code>/</code>
+     */
+    void trackNamespaces(SemanticModel model, Collection<String> namespaces) {
+        for (String ns : namespaces) {
+            if (ns != null) {
+                addRoute(prefix(ns), model);
+            }
+        }
+        track(model);
+    }
+
+    /**
+     * Marks a model as tracked, all its subjects are registered.
+     *
+     * @param model the model
+     */
+    void track(SemanticModel model) {
+        untracked.remove(model);
+    }
+
+    /**
+     * Removes a model from the index.
+     *
+     * @param model the model
+     */
+    void remove(SemanticModel model) {
+        untracked.remove(model);
+        unprefixed.remove(model);
+        for (Set<SemanticModel> models : routes.values()) {
+            models.remove(model);
+        }
+    }
+
+    /**
+     * Gets the models that may contain a subject URI, tracked models holding the prefix come first.
+     *
+     * @param uri the URI
+     * @return list of candidate models.
+     */
+    List<SemanticModel> route(String uri) {
+        String prefix = prefix(uri);
+        Set<SemanticModel> models = prefix != null ? routes.get(prefix) : unprefixed;
+        List<SemanticModel> ret = new ArrayList<>((models != null ? models.size() : 0) + untracked.size());
+        if (models != null) {
+            for (SemanticModel model : models) {
+                if (!untracked.contains(model)) {
+                    ret.add(model);
+                }
+            }
+        }
+        ret.addAll(untracked);
+        return ret;
+    }
+
+    /**
+     * Gets the number of indexed prefixes.
+     * @return number of prefixes.
+     */
+    int size() {
+        return routes.size();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of URIs known not to exist, entries expire after a time to live.
+ *
+ * @author javier.solis.g
+ */
+final class NotFoundCache {
+    private final ConcurrentHashMap<String, Long> entries = new ConcurrentHashMap<>();
+    private volatile long ttl;
+    private volatile int maxSize;
+
+    /**
+     * Creates the cache.
+     *
+     * @param maxSize max number of URIs
+     * @param ttl     time to live of each entry in milliseconds
+     */
+    NotFoundCache(int maxSize, long ttl) {
+        configure(maxSize, ttl);
+    }
+
+    /**
+     * Changes the limits of the cache.
+     *
+     * @param maxSize max number of URIs
+     * @param ttl     time to live of each entry in milliseconds
+     */
+    void configure(int maxSize, long ttl) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttl = ttl;
+    }
+
+    /**
+     * Checks if a URI is known not to exist.
+     *
+     * @param uri the URI
+     * @return true if the URI was not found and the entry has not expired.
+     */
+    boolean contains(String uri) {
+        Long expires = entries.get(uri);
+        if (expires == null) {
+            return false;
+        }
+        if (expires < System.currentTimeMillis()) {
+            entries.remove(uri, expires);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Registers a URI that was not found.
+     *
+     * @param uri the URI
+     */
+    void put(String uri) {
+        long now = System.currentTimeMillis();
+        entries.put(uri, now + ttl);
+        if (entries.size() > maxSize) {
+            purge(now);
+        }
+    }
+
+    /**
+     * Removes a URI.
+     *
+     * @param uri the URI
+     */
+    void remove(String uri) {
+        entries.remove(uri);
+    }
+
+    /**
+     * Removes all URIs.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of URIs.
+     * @return number of URIs.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes expired entries, and entries in iteration order until a quarter of the capacity is free.
+     */
+    private void purge(long now) {
+        int target = maxSize - maxSize / 4;
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() < now) {
+                it.remove();
+            }
+        }
+        it = entries.entrySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
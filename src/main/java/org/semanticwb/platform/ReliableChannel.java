@@ -0,0 +1,699 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import org.semanticwb.Logger;
+import org.semanticwb.SWBPlatform;
+import org.semanticwb.SWBUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reliable replication channel of the {@link SWBMessageCenter}.
+ * <p>
+ * Messages get a sequence number per sender and are coalesced into binary frames sent every few milliseconds.
+ * Receivers deliver messages of each sender in order, detect gaps from out of order frames and from the
+ * heartbeats of the sender, and request the missing messages with NACK frames. Senders keep a ring of recent
+ * messages to answer them. Gaps that can not be filled in time are skipped and logged. Delivery starts at the
+ * first frame seen from a sender, the first sequence of a DATA frame or the one after the last sequence of a
+ * heartbeat: earlier messages were sent before this node joined and its state is loaded from the store, so only
+ * gaps opened after the join are requested. Nodes exchange heartbeats at start, so a sender is usually joined
+ * before its first message. Messages larger than a frame are sent as fragments with consecutive sequences and
+ * reassembled by the receiver.
+ * <p>
+ * Frame layout: magic, version, type, sender id, listen port and the payload of the type.
+ * <ul>
+ * <li>DATA: first sequence, count and the messages, each one with its kind (UTF-8 text, binary or fragment),
+ * length and bytes.</li>
+ * <li>NACK: first and last missing sequence.</li>
+ * <li>HEARTBEAT: last sequence sent.</li>
+ * </ul>
+ *
+ * @author javier.solis.g
+ */
+final class ReliableChannel {
+    private static final Logger LOG = SWBUtils.getLogger(ReliableChannel.class);
+
+    static final int MAGIC = 0x53574252;
+    static final byte VERSION = 2;
+    static final byte DATA = 1;
+    static final byte NACK = 2;
+    static final byte HEARTBEAT = 3;
+
+    private static final byte TEXT = 0;
+    private static final byte BINARY = 1;
+    private static final byte FIRST = 2;
+    private static final byte MIDDLE = 3;
+    private static final byte LAST_TEXT = 4;
+    private static final byte LAST_BINARY = 5;
+
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 8 + 4;
+    private static final int MAX_FRAME = 60000;
+    /** Largest message sent whole, DATA frame of a single message. */
+    static final int MAX_MESSAGE = MAX_FRAME - HEADER_SIZE - 12 - 5;
+
+    /** Copy buffer of the receiving threads, a message is never larger than a datagram. */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[65536]);
+
+    private final Endpoint endpoint;
+    private final Transport transport;
+    private final long senderId;
+    private final int listenPort;
+    private final long flushInterval;
+    private final long heartbeatInterval;
+    private final long nackInterval;
+    private final long gapTimeout;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object sendLock = new Object();
+    private long nextSeq = 1;
+    private final List<Object> pending = new ArrayList<>();
+    private final Object[] history;
+    private final long[] historySeq;
+
+    private final ConcurrentHashMap<Long, Sender> senders = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the channel.
+     *
+     * @param center     the message center
+     * @param addr       local address
+     * @param listenPort port of the message server of this node
+     * @throws SocketException if the send socket can not be created.
+     */
+    ReliableChannel(SWBMessageCenter center, InetAddress addr, int listenPort) throws SocketException {
+        this(endpoint(center), transport(addr), listenPort,
+                Long.parseLong(SWBPlatform.getEnv("swb/messageFlushInterval", "5")),
+                Long.parseLong(SWBPlatform.getEnv("swb/messageHeartbeatInterval", "1000")),
+                Long.parseLong(SWBPlatform.getEnv("swb/messageNackInterval", "50")),
+                Long.parseLong(SWBPlatform.getEnv("swb/messageGapTimeout", "5000")),
+                Integer.parseInt(SWBPlatform.getEnv("swb/messageHistorySize", "8192")));
+    }
+
+    /**
+     * Creates the channel over a transport, used by tests to simulate lost and reordered frames.
+     *
+     * @param endpoint          receiver of the delivered messages
+     * @param transport         sender of the frames
+     * @param listenPort        port of the message server of this node
+     * @param flushInterval     milliseconds between frames
+     * @param heartbeatInterval milliseconds between heartbeats
+     * @param nackInterval      milliseconds between NACKs of a gap
+     * @param gapTimeout        milliseconds before a gap is skipped
+     * @param historySize       number of sent messages kept to answer NACKs
+     */
+    ReliableChannel(Endpoint endpoint, Transport transport, int listenPort, long flushInterval,
+                    long heartbeatInterval, long nackInterval, long gapTimeout, int historySize) {
+        this.endpoint = endpoint;
+        this.transport = transport;
+        this.listenPort = listenPort;
+        this.senderId = new SecureRandom().nextLong();
+        this.flushInterval = flushInterval;
+        this.heartbeatInterval = heartbeatInterval;
+        this.nackInterval = nackInterval;
+        this.gapTimeout = gapTimeout;
+        this.history = new Object[historySize];
+        this.historySeq = new long[historySize];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SWBReliableChannel");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static Endpoint endpoint(SWBMessageCenter center) {
+        return new Endpoint() {
+            @Override
+            public void incomingMessage(String message, String host) {
+                center.incomingMessage(message, host);
+            }
+
+            @Override
+            public void incomingBinary(ByteBuffer data, String host) {
+                center.incomingBinary(data, host);
+            }
+
+            @Override
+            public List<InetSocketAddress> getPeerAddresses() {
+                return center.getPeerAddresses();
+            }
+        };
+    }
+
+    private static Transport transport(InetAddress addr) throws SocketException {
+        DatagramSocket socket = addr != null ? new DatagramSocket(0, addr) : new DatagramSocket();
+        return new Transport() {
+            @Override
+            public void send(byte[] data, InetSocketAddress address) throws IOException {
+                socket.send(new DatagramPacket(data, data.length, address));
+            }
+
+            @Override
+            public void close() {
+                socket.close();
+            }
+        };
+    }
+
+    /**
+     * Starts the flush, heartbeat and gap check tasks, the first heartbeat announces the node to its peers.
+     */
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::checkGaps, nackInterval, nackInterval, TimeUnit.MILLISECONDS);
+        LOG.event("SWBReliableChannel started, sender:" + Long.toHexString(senderId) + " flush:" + flushInterval + "ms");
+    }
+
+    /**
+     * Stops the channel sending pending messages.
+     */
+    void close() {
+        scheduler.shutdown();
+        flush();
+        transport.close();
+    }
+
+    /**
+     * Queues a message, it is sent with the next frame.
+     *
+     * @param message the message
+     */
+    void send(String message) {
+        if (message.length() * 3 > MAX_MESSAGE) {
+            byte[] data = message.getBytes(StandardCharsets.UTF_8);
+            if (data.length > MAX_MESSAGE) {
+                queueFragments(data, LAST_TEXT);
+                return;
+            }
+        }
+        queue(message);
+    }
+
+    /**
+     * Queues a binary message, it is sent with the next frame and delivered to
+     * {@link SWBMessageCenter#incomingBinary(ByteBuffer, String)}.
+     *
+     * @param message the message
+     */
+    void sendBinary(byte[] message) {
+        if (message.length > MAX_MESSAGE) {
+            queueFragments(message, LAST_BINARY);
+        } else {
+            queue(message);
+        }
+    }
+
+    /**
+     * Queues a message larger than a frame as fragments with consecutive sequences.
+     */
+    private void queueFragments(byte[] data, byte last) {
+        synchronized (sendLock) {
+            for (int off = 0; off < data.length; off += MAX_MESSAGE) {
+                int end = Math.min(data.length, off + MAX_MESSAGE);
+                byte kind = off == 0 ? FIRST : end == data.length ? last : MIDDLE;
+                queue(new Fragment(kind, Arrays.copyOfRange(data, off, end)));
+            }
+        }
+    }
+
+    private void queue(Object message) {
+        synchronized (sendLock) {
+            long seq = nextSeq++;
+            int i = (int) (seq % history.length);
+            history[i] = message;
+            historySeq[i] = seq;
+            pending.add(message);
+        }
+    }
+
+    /**
+     * Checks if a received datagram is a frame of this channel.
+     *
+     * @param buf datagram data between position and limit
+     * @return true if the datagram starts with the frame magic.
+     */
+    static boolean isFrame(ByteBuffer buf) {
+        return buf.remaining() >= HEADER_SIZE && buf.getInt(buf.position()) == MAGIC;
+    }
+
+    /**
+     * Processes a received frame.
+     *
+     * @param buf    frame data between position and limit
+     * @param source address of the sending socket
+     */
+    void receive(ByteBuffer buf, InetSocketAddress source) {
+        try {
+            buf.getInt();
+            byte version = buf.get();
+            if (version != VERSION) {
+                LOG.warn("Unsupported frame version " + version + " from " + source.getAddress().getHostAddress());
+                return;
+            }
+            byte type = buf.get();
+            long sender = buf.getLong();
+            InetSocketAddress from = new InetSocketAddress(source.getAddress(), buf.getInt());
+
+            if (type == DATA) {
+                long first = buf.getLong();
+                int count = buf.getInt();
+                Object[] messages = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    byte kind = buf.get();
+                    int length = buf.getInt();
+                    if (kind == TEXT) {
+                        messages[i] = decode(buf, length);
+                    } else {
+                        byte[] data = new byte[length];
+                        buf.get(data);
+                        messages[i] = kind == BINARY ? data : new Fragment(kind, data);
+                    }
+                }
+                getSender(sender, from).onData(first, messages);
+            } else if (type == NACK) {
+                resend(buf.getLong(), buf.getLong(), from);
+            } else if (type == HEARTBEAT) {
+                getSender(sender, from).onHeartbeat(buf.getLong());
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Invalid frame from " + source.getAddress().getHostAddress(), e);
+        }
+    }
+
+    /**
+     * Decodes an UTF-8 string of the buffer without allocating intermediate arrays.
+     */
+    private static String decode(ByteBuffer buf, int length) {
+        String ret;
+        if (buf.hasArray()) {
+            ret = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] data = SCRATCH.get();
+            buf.get(data, 0, length);
+            ret = new String(data, 0, length, StandardCharsets.UTF_8);
+        }
+        return ret;
+    }
+
+    private Sender getSender(long id, InetSocketAddress address) {
+        Sender ret = senders.get(id);
+        if (ret == null) {
+            ret = senders.computeIfAbsent(id, k -> new Sender(k, address));
+        }
+        ret.address = address;
+        return ret;
+    }
+
+    /**
+     * Sends the pending messages to all peers.
+     */
+    void flush() {
+        long first;
+        List<Object> batch;
+        synchronized (sendLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            first = nextSeq - pending.size();
+            pending.clear();
+        }
+        try {
+            sendData(first, batch, endpoint.getPeerAddresses());
+        } catch (Exception e) {
+            LOG.error("SWBReliableChannel flush error", e);
+        }
+    }
+
+    /**
+     * Sends the last sequence to all peers so receivers can detect lost tail messages.
+     */
+    void heartbeat() {
+        try {
+            long last;
+            synchronized (sendLock) {
+                last = nextSeq - 1 - pending.size();
+            }
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(HEADER_SIZE + 8);
+            DataOutputStream out = header(bout, HEARTBEAT);
+            out.writeLong(last);
+            send(bout.toByteArray(), endpoint.getPeerAddresses());
+        } catch (Exception e) {
+            LOG.error("SWBReliableChannel heartbeat error", e);
+        }
+    }
+
+    /**
+     * Requests missing messages and skips expired gaps.
+     */
+    void checkGaps() {
+        long now = System.currentTimeMillis();
+        long expiration = Math.max(60000, heartbeatInterval * 30);
+        Iterator<Sender> it = senders.values().iterator();
+        while (it.hasNext()) {
+            Sender sender = it.next();
+            try {
+                if (!sender.check(now, expiration)) {
+                    it.remove();
+                }
+            } catch (Exception e) {
+                LOG.error("SWBReliableChannel gap check error", e);
+            }
+        }
+    }
+
+    /**
+     * Sends again the messages of a range still in the history.
+     */
+    private void resend(long from, long to, InetSocketAddress address) {
+        List<InetSocketAddress> peer = new ArrayList<>(1);
+        peer.add(address);
+        from = Math.max(from, to - history.length + 1);
+
+        List<Object> run = new ArrayList<>();
+        long runFirst = from;
+        for (long seq = from; seq <= to; seq++) {
+            Object message = null;
+            synchronized (sendLock) {
+                int i = (int) (seq % history.length);
+                if (historySeq[i] == seq) {
+                    message = history[i];
+                }
+            }
+            if (message == null) {
+                //No longer in history, the receiver skips it after the gap timeout
+                if (!run.isEmpty()) {
+                    sendData(runFirst, run, peer);
+                    run = new ArrayList<>();
+                }
+                runFirst = seq + 1;
+            } else {
+                run.add(message);
+            }
+        }
+        if (!run.isEmpty()) {
+            sendData(runFirst, run, peer);
+        }
+    }
+
+    /**
+     * Sends consecutive messages splitting them in frames.
+     */
+    private void sendData(long first, List<Object> messages, List<InetSocketAddress> peers) {
+        try {
+            int start = 0;
+            while (start < messages.size()) {
+                ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                DataOutputStream body = new DataOutputStream(bout);
+                int size = HEADER_SIZE + 12;
+                int count = 0;
+                while (start + count < messages.size()) {
+                    Object message = messages.get(start + count);
+                    byte kind;
+                    byte[] data;
+                    if (message instanceof Fragment) {
+                        kind = ((Fragment) message).kind;
+                        data = ((Fragment) message).data;
+                    } else if (message instanceof byte[]) {
+                        kind = BINARY;
+                        data = (byte[]) message;
+                    } else {
+                        kind = TEXT;
+                        data = ((String) message).getBytes(StandardCharsets.UTF_8);
+                    }
+                    if (count > 0 && size + 5 + data.length > MAX_FRAME) {
+                        break;
+                    }
+                    body.writeByte(kind);
+                    body.writeInt(data.length);
+                    body.write(data);
+                    size += 5 + data.length;
+                    count++;
+                }
+
+                ByteArrayOutputStream frame = new ByteArrayOutputStream(size);
+                DataOutputStream out = header(frame, DATA);
+                out.writeLong(first + start);
+                out.writeInt(count);
+                bout.writeTo(out);
+                send(frame.toByteArray(), peers);
+                start += count;
+            }
+        } catch (IOException e) {
+            LOG.error("SWBReliableChannel send error", e);
+        }
+    }
+
+    private void sendNack(InetSocketAddress address, long from, long to) {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(HEADER_SIZE + 16);
+            DataOutputStream out = header(bout, NACK);
+            out.writeLong(from);
+            out.writeLong(to);
+            transport.send(bout.toByteArray(), address);
+        } catch (IOException e) {
+            LOG.error("SWBReliableChannel NACK error", e);
+        }
+    }
+
+    private DataOutputStream header(ByteArrayOutputStream bout, byte type) throws IOException {
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeLong(senderId);
+        out.writeInt(listenPort);
+        return out;
+    }
+
+    private void send(byte[] data, List<InetSocketAddress> peers) {
+        for (InetSocketAddress peer : peers) {
+            try {
+                transport.send(data, peer);
+            } catch (IOException e) {
+                LOG.error("SWBReliableChannel send error to " + peer, e);
+            }
+        }
+    }
+
+    /**
+     * Receive state of a remote sender.
+     */
+    private final class Sender {
+        private final long id;
+        private volatile InetSocketAddress address;
+        private final TreeMap<Long, Object> buffer = new TreeMap<>();
+        private long expected = -1;
+        private ByteArrayOutputStream partial = null;
+        private long highest = 0;
+        private long gapSince = 0;
+        private long lastNack = 0;
+        private long lastSeen = System.currentTimeMillis();
+
+        Sender(long id, InetSocketAddress address) {
+            this.id = id;
+            this.address = address;
+        }
+
+        synchronized void onData(long first, Object[] messages) {
+            lastSeen = System.currentTimeMillis();
+            if (expected < 0) {
+                join(first);
+            }
+            for (int i = 0; i < messages.length; i++) {
+                long seq = first + i;
+                if (seq > highest) {
+                    highest = seq;
+                }
+                if (seq == expected) {
+                    deliver(messages[i]);
+                    expected++;
+                } else if (seq > expected) {
+                    buffer.put(seq, messages[i]);
+                }
+            }
+            drain();
+            if (buffer.size() > history.length) {
+                skip();
+            }
+            check(lastSeen, Long.MAX_VALUE);
+        }
+
+        synchronized void onHeartbeat(long last) {
+            lastSeen = System.currentTimeMillis();
+            if (expected < 0) {
+                join(last + 1);
+            }
+            if (last > highest) {
+                highest = last;
+            }
+            check(lastSeen, Long.MAX_VALUE);
+        }
+
+        /**
+         * Starts receiving from the sender at seq, earlier messages were sent before this node joined.
+         */
+        private void join(long seq) {
+            expected = seq;
+        }
+
+        /**
+         * Requests or skips the current gap.
+         * @return false if the sender has expired.
+         */
+        synchronized boolean check(long now, long expiration) {
+            if (expected < 0 || highest < expected) {
+                gapSince = 0;
+                return now - lastSeen < expiration;
+            }
+            if (gapSince == 0) {
+                gapSince = now;
+            }
+            if (now - gapSince > gapTimeout) {
+                skip();
+            } else if (now - gapSince >= nackInterval && now - lastNack >= nackInterval) {
+                //Waits a NACK interval so reordered frames can fill the gap
+                lastNack = now;
+                sendNack(address, expected, gapEnd());
+            }
+            return now - lastSeen < expiration;
+        }
+
+        private long gapEnd() {
+            return buffer.isEmpty() ? highest : buffer.firstKey() - 1;
+        }
+
+        private void skip() {
+            long end = gapEnd();
+            LOG.error("SWBReliableChannel lost messages " + expected + "-" + end + " from "
+                    + address.getAddress().getHostAddress() + " sender:" + Long.toHexString(id));
+            expected = end + 1;
+            partial = null;
+            gapSince = 0;
+            drain();
+        }
+
+        private void drain() {
+            while (!buffer.isEmpty() && buffer.firstKey() <= expected) {
+                Map.Entry<Long, Object> entry = buffer.pollFirstEntry();
+                if (entry.getKey() == expected) {
+                    deliver(entry.getValue());
+                    expected++;
+                }
+            }
+        }
+
+        private void deliver(Object message) {
+            if (message instanceof Fragment) {
+                message = assemble((Fragment) message);
+                if (message == null) {
+                    return;
+                }
+            }
+            try {
+                if (message instanceof byte[]) {
+                    endpoint.incomingBinary(ByteBuffer.wrap((byte[]) message), address.getAddress().getHostAddress());
+                } else {
+                    endpoint.incomingMessage((String) message, address.getAddress().getHostAddress());
+                }
+            } catch (Exception e) {
+                LOG.error(e);
+            }
+        }
+
+        /**
+         * Appends a fragment to the partial message.
+         * @return the message if the fragment is the last one.
+         */
+        private Object assemble(Fragment fragment) {
+            if (fragment.kind == FIRST) {
+                partial = new ByteArrayOutputStream(fragment.data.length * 2);
+            } else if (partial == null) {
+                //The start of the message was skipped or sent before this node joined
+                return null;
+            }
+            partial.write(fragment.data, 0, fragment.data.length);
+            if (fragment.kind != LAST_TEXT && fragment.kind != LAST_BINARY) {
+                return null;
+            }
+            byte[] data = partial.toByteArray();
+            partial = null;
+            return fragment.kind == LAST_BINARY ? data : new String(data, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Part of a message larger than a frame.
+     */
+    private static final class Fragment {
+        private final byte kind;
+        private final byte[] data;
+
+        Fragment(byte kind, byte[] data) {
+            this.kind = kind;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Receiver of the delivered messages and provider of the peers, the {@link SWBMessageCenter}.
+     */
+    interface Endpoint {
+        void incomingMessage(String message, String host);
+
+        void incomingBinary(ByteBuffer data, String host);
+
+        List<InetSocketAddress> getPeerAddresses();
+    }
+
+    /**
+     * Sender of the frames, a datagram socket.
+     */
+    interface Transport {
+        void send(byte[] data, InetSocketAddress address) throws IOException;
+
+        void close();
+    }
+}
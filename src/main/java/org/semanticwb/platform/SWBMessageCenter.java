@@ -22,6 +22,7 @@
  */
 package org.semanticwb.platform;
 
+import com.hp.hpl.jena.db.impl.NodeDictionaryCache;
 import org.semanticwb.Logger;
 import org.semanticwb.SWBPlatform;
 import org.semanticwb.SWBUtils;
@@ -31,9 +32,13 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
-import java.text.SimpleDateFormat;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class responsible for the reception and shipment of UDP messages for servers synchronization.
@@ -80,12 +85,12 @@ public class SWBMessageCenter {
     /**
      * The messages.
      */
-    private LinkedList<String> messages;
+    private MessageQueue messages;
 
     /**
      * The dateFormat.
      */
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     /**
      * The localhost.
@@ -102,13 +107,37 @@ public class SWBMessageCenter {
      **/
     private String syncMessage = null;
 
+    /**
+     * Reliable channel, null if messages are sent as plain datagrams.
+     */
+    private ReliableChannel channel = null;
+
+    /**
+     * Max change messages held per unknown dictionary.
+     */
+    private static final int MAX_HELD_CHANGES = 10000;
+
+    /**
+     * Codec of the change messages, created with the first change.
+     */
+    private volatile SemanticChangeCodec codec = null;
+
+    /**
+     * Change messages waiting for the dictionary they were encoded with.
+     */
+    private final Map<Long, List<byte[]>> heldChanges = new HashMap<>();
+
 
     /**
      * Creates a new instance of {@link SWBMessageCenter}.
      */
     public SWBMessageCenter() {
         LOG.event("Initializing SWBMessageCenter...");
-        messages = new LinkedList<>();
+        int size = Integer.parseInt(SWBPlatform.getEnv("swb/messageQueueSize", "65536"));
+        MessageQueue.Policy policy = MessageQueue.Policy.valueOf(
+                SWBPlatform.getEnv("swb/messageQueuePolicy", "DROP_OLDEST").toUpperCase());
+        messages = new MessageQueue(size, policy);
+        LOG.event("SWBMessageCenter queue:" + messages.capacity() + " policy:" + policy);
     }
 
     /**
@@ -120,6 +149,10 @@ public class SWBMessageCenter {
             sock.close();
         }
 
+        if (channel != null) {
+            channel.close();
+        }
+
         if (server != null) {
             server.stopServer();
         }
@@ -174,6 +207,12 @@ public class SWBMessageCenter {
 
                     syncMessage = "syn|hel|" + addr.getHostAddress() + ":" + port;
 
+                    if (Boolean.parseBoolean(SWBPlatform.getEnv("swb/messageReliable", "false"))) {
+                        //All nodes of the cluster must use the reliable channel
+                        channel = new ReliableChannel(this, addr, port);
+                        channel.start();
+                    }
+
                     server = new SWBMessageServer(this, addr, port);
                     server.start();
 
@@ -268,37 +307,77 @@ public class SWBMessageCenter {
      * @param message the message
      */
     public void sendMessage(String message) {
-        if (!standalone && !packets.isEmpty()) {
-            //Try to get socket connection
-            if (null == sock) {
-                try {
-                    if (addr != null) {
-                        DatagramSocket aux = new DatagramSocket();   //obtener un puerto de salida valido...
-                        int x = aux.getLocalPort();
-                        aux.close();
-                        sock = new DatagramSocket(x, addr);
-                    } else {
-                        sock = new DatagramSocket();
-                    }
-                } catch (SocketException sex) {
-                    LOG.error("SWBMessageCenter Socket Error:" + message, sex);
+        if (!standalone && channel != null) {
+            channel.send(message);
+        } else if (!standalone && !packets.isEmpty()) {
+            sendDatagram(message.getBytes(), message);
+        } else {
+            incomingMessage(message, localhost);
+        }
+    }
+
+    /**
+     * Sends a change of a {@link SemanticObject} to the other nodes, they apply it with
+     * {@link SemanticMgr#submitExternalChange(SemanticExternalChange)}.
+     *
+     * @param change the change
+     */
+    public void sendChange(SemanticExternalChange change) {
+        SemanticChangeCodec cdc = getChangeCodec();
+        if (!standalone && cdc != null) {
+            sendBinary(cdc.encode(change));
+        }
+    }
+
+    /**
+     * Sends a binary message to all peers.
+     *
+     * @param data the message
+     */
+    void sendBinary(byte[] data) {
+        if (standalone) {
+            return;
+        }
+        if (channel != null) {
+            channel.sendBinary(data);
+        } else if (!packets.isEmpty()) {
+            sendDatagram(data, "binary message");
+        }
+    }
+
+    /**
+     * Sends a datagram to each address of the list.
+     *
+     * @param data    datagram data
+     * @param message description of the data for the log
+     */
+    private void sendDatagram(byte[] data, String message) {
+        //Try to get socket connection
+        if (null == sock) {
+            try {
+                if (addr != null) {
+                    DatagramSocket aux = new DatagramSocket();   //obtener un puerto de salida valido...
+                    int x = aux.getLocalPort();
+                    aux.close();
+                    sock = new DatagramSocket(x, addr);
+                } else {
+                    sock = new DatagramSocket();
                 }
+            } catch (SocketException sex) {
+                LOG.error("SWBMessageCenter Socket Error:" + message, sex);
             }
+        }
 
-            //Send packets
-            if (null != sock) {
-                try {
-                    byte[] data = message.getBytes();
-                    for (DatagramPacket refPacket : packets) {
-                        DatagramPacket packet = new DatagramPacket(data, data.length, refPacket.getAddress(), refPacket.getPort());
-                        sock.send(packet);
-                    }
-                } catch (IOException ioex) {
-                    LOG.error("SWBMessageCenter SendMessage Error:" + message, ioex);
+        //Send packets
+        if (null != sock) {
+            try {
+                for (DatagramPacket refPacket : packets) {
+                    DatagramPacket packet = new DatagramPacket(data, data.length, refPacket.getAddress(), refPacket.getPort());
+                    sock.send(packet);
                 }
+            } catch (IOException ioex) {
+                LOG.error("SWBMessageCenter SendMessage Error:" + message, ioex);
             }
-        } else {
-            incomingMessage(message, localhost);
         }
     }
 
@@ -311,10 +390,120 @@ public class SWBMessageCenter {
     public void incomingMessage(String message, String addr) {
         StringBuilder logbuf = new StringBuilder(message.length() + 20);
         logbuf.append(message.substring(0, 4));
-        logbuf.append(dateFormat.format(new Date()));
+        //Messages are received by several workers, the formatter is thread safe
+        logbuf.append(dateFormat.format(LocalDateTime.now()));
         logbuf.append(message.substring(3));
         pushMessage(logbuf.toString());
         LOG.debug("Message from " + addr + ":(" + message + ")");
+        if (message.startsWith("ini|hel|") && codec != null) {
+            //A new node needs the dictionary to decode the changes of this node
+            sendBinary(codec.encodeDictionary());
+        } else if (message.startsWith(NodeDictionaryCache.CLEAR_MESSAGE)) {
+            NodeDictionaryCache.getInstance().clear();
+        } else if (message.startsWith(SemanticMgr.MODELS_MESSAGE)) {
+            SemanticMgr mgr = SWBPlatform.getSemanticMgr();
+            if (mgr != null && mgr.getSWBStore() != null) {
+                mgr.getSWBStore().refreshModelNames();
+                //Subjects written by other nodes are not in the local subject filters
+                for (Map.Entry<String, SemanticModel> entry : mgr.getModels()) {
+                    entry.getValue().resetSubjectFilter();
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes a binary message of the {@link SemanticChangeCodec} format.
+     *
+     * @param buf  message data between position and limit
+     * @param addr the address
+     */
+    void incomingBinary(ByteBuffer buf, String addr) {
+        SemanticChangeCodec cdc = getChangeCodec();
+        if (cdc == null || cdc.isLocal(buf)) {
+            return;
+        }
+        try {
+            byte type = SemanticChangeCodec.getType(buf);
+            long dict = SemanticChangeCodec.getDictionaryId(buf);
+            if (type == SemanticChangeCodec.CHANGE) {
+                if (cdc.knowsDictionary(dict) || !holdChange(cdc, dict, buf, addr)) {
+                    applyChange(cdc.decode(buf));
+                }
+            } else if (type == SemanticChangeCodec.DICT) {
+                synchronized (heldChanges) {
+                    cdc.learnDictionary(buf);
+                    List<byte[]> held = heldChanges.remove(dict);
+                    if (held != null) {
+                        LOG.debug("Dictionary " + Long.toHexString(dict) + " from " + addr + ", applying " + held.size() + " changes");
+                        for (byte[] data : held) {
+                            applyChange(cdc.decode(ByteBuffer.wrap(data)));
+                        }
+                    }
+                }
+            } else if (type == SemanticChangeCodec.DICT_REQ && dict == cdc.getDictionaryId()) {
+                sendBinary(cdc.encodeDictionary());
+            }
+        } catch (IOException e) {
+            LOG.error("Invalid change message from " + addr, e);
+        }
+    }
+
+    /**
+     * Holds a change until its dictionary arrives, changes are applied in arrival order.
+     *
+     * @return false if the dictionary arrived meanwhile and the change must be applied now.
+     */
+    private boolean holdChange(SemanticChangeCodec cdc, long dict, ByteBuffer buf, String addr) {
+        synchronized (heldChanges) {
+            if (cdc.knowsDictionary(dict)) {
+                return false;
+            }
+            List<byte[]> held = heldChanges.computeIfAbsent(dict, k -> new ArrayList<>());
+            if (held.size() >= MAX_HELD_CHANGES) {
+                LOG.error("Change dropped, dictionary " + Long.toHexString(dict) + " from " + addr + " not received");
+                return true;
+            }
+            byte[] data = new byte[buf.remaining()];
+            buf.get(data);
+            held.add(data);
+            if (held.size() % 100 == 1) {
+                sendBinary(cdc.encodeDictionaryRequest(dict));
+            }
+            return true;
+        }
+    }
+
+    private void applyChange(SemanticExternalChange change) {
+        try {
+            SWBPlatform.getSemanticMgr().submitExternalChange(change);
+        } catch (Exception e) {
+            LOG.error("Error applying change " + change, e);
+        }
+    }
+
+    /**
+     * Gets the codec of the change messages, it is created once the {@link SemanticMgr} is available and its
+     * dictionary is sent to the other nodes.
+     *
+     * @return the codec or null if the semantic manager is not initialized.
+     */
+    public SemanticChangeCodec getChangeCodec() {
+        SemanticChangeCodec ret = codec;
+        if (ret == null) {
+            synchronized (this) {
+                ret = codec;
+                SemanticMgr mgr = SWBPlatform.getSemanticMgr();
+                if (ret == null && mgr != null && mgr.getSchema() != null) {
+                    ret = SemanticChangeCodec.create(mgr);
+                    codec = ret;
+                    LOG.event("SWBMessageCenter change dictionary:" + Long.toHexString(ret.getDictionaryId())
+                            + " namespaces:" + ret.getDictionarySize());
+                    sendBinary(ret.encodeDictionary());
+                }
+            }
+        }
+        return ret;
     }
 
     /**
@@ -323,28 +512,91 @@ public class SWBMessageCenter {
      * @param message the message
      */
     public void pushMessage(String message) {
-        synchronized (messages) {
-            messages.addFirst(message);
+        if (!messages.offer(message)) {
+            long drops = messages.getDropped();
+            if (drops == 1 || drops % 10000 == 0) {
+                LOG.warn("SWBMessageCenter queue full, messages dropped:" + drops);
+            }
         }
     }
 
     /**
      * Pops a message from the queue.
      *
-     * @return message string or empty string if pop fails.
+     * @return message string or empty string if the queue is empty.
      */
     public String popMessage() {
-        try {
-            synchronized (messages) {
-                return messages.removeLast();
-            }
-        } catch (Exception e) {
-            synchronized (messages) {
-                messages.clear();
-            }
-            LOG.error("SWBMessageCenter Pop Message Error...", e);
-        }
-        return "";
+        String ret = messages.poll();
+        return ret != null ? ret : "";
+    }
+
+    /**
+     * Removes up to <code>max</code> queued messages without waiting, in arrival order.
+     *
+     * @param to  collection receiving the messages
+     * @param max max number of messages
+     * @return number of messages removed.
+     */
+    public int drainMessages(Collection<? super String> to, int max) {
+        return messages.drainTo(to, max);
+    }
+
+    /**
+     * Removes up to <code>max</code> queued messages in arrival order, waiting for the first one up to a timeout.
+     *
+     * @param to      collection receiving the messages
+     * @param max     max number of messages
+     * @param timeout time to wait in milliseconds
+     * @return number of messages removed, 0 if the timeout expired.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public int drainMessages(Collection<? super String> to, int max, long timeout) throws InterruptedException {
+        return messages.drainTo(to, max, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the number of messages dropped because the queue was full.
+     *
+     * @return number of messages.
+     */
+    public long getDroppedMessages() {
+        return messages.getDropped();
+    }
+
+    /**
+     * Gets the number of messages received.
+     *
+     * @return number of messages.
+     */
+    public long getReceivedMessages() {
+        return messages.getEnqueued();
+    }
+
+    /**
+     * Gets the average time messages wait in the queue.
+     *
+     * @return time in microseconds.
+     */
+    public long getAverageMessageWait() {
+        return messages.getAverageWait();
+    }
+
+    /**
+     * Gets the max time a message waited in the queue.
+     *
+     * @return time in microseconds.
+     */
+    public long getMaxMessageWait() {
+        return messages.getMaxWait();
+    }
+
+    /**
+     * Gets the capacity of the message queue.
+     *
+     * @return max number of queued messages.
+     */
+    public int getMessageQueueCapacity() {
+        return messages.capacity();
     }
 
     /**
@@ -391,7 +643,7 @@ public class SWBMessageCenter {
      * @return true if there are queued messages.
      */
     public boolean hasMessages() {
-        return !messages.isEmpty();
+        return messages.size() > 0;
     }
 
     /**
@@ -416,6 +668,28 @@ public class SWBMessageCenter {
         }
     }
 
+    /**
+     * Gets the reliable channel.
+     *
+     * @return the channel or null if it is not enabled.
+     */
+    ReliableChannel getReliableChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the addresses of the peers that receive messages.
+     *
+     * @return list of addresses.
+     */
+    synchronized List<InetSocketAddress> getPeerAddresses() {
+        List<InetSocketAddress> ret = new ArrayList<>(packets.size());
+        for (DatagramPacket packet : packets) {
+            ret.add(new InetSocketAddress(packet.getAddress(), packet.getPort()));
+        }
+        return ret;
+    }
+
     /**
      * Gets the {@link SWBMessageServer}.
      *
@@ -21,17 +21,30 @@
  */
 package org.semanticwb.platform;
 
+import com.hp.hpl.jena.db.impl.SQLCache_SWB;
 import org.semanticwb.Logger;
 import org.semanticwb.SWBPlatform;
 import org.semanticwb.SWBUtils;
 
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Message Server implementation for UDP hit synchronization.
+ * <p>
+ * Datagrams are received on a {@link DatagramChannel} into a pool of reusable direct buffers and
+ * decoded by a small pool of workers. Datagrams of the same source are always decoded by the same
+ * worker, so messages of a node keep their order.
  *
  * @author Javier Solis Gonzalez
  * @version 1.0
@@ -47,20 +60,35 @@ public class SWBMessageServer extends java.lang.Thread {
      */
     public static final Logger LOG = SWBUtils.getLogger(SWBMessageServer.class);
     /**
-     * The socket.
+     * The channel.
      */
-    private DatagramSocket socket = null;
+    private DatagramChannel channel = null;
 
     /**
      * Flag to stop running server.
      */
-    private boolean stop = false;
+    private volatile boolean stop = false;
 
     /**
      * The {@link SWBMessageCenter}.
      */
     private SWBMessageCenter center;
 
+    /**
+     * Workers decoding datagrams, one thread each.
+     */
+    private ExecutorService[] workers;
+
+    /**
+     * Copy buffer of each worker, used to decode datagrams.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[PACKET_SIZE]);
+
+    /**
+     * Reusable receive buffers, bounds the datagrams waiting to be decoded.
+     */
+    private BlockingQueue<ByteBuffer> buffers;
+
     /**
      * Constructor. Creates a new {@link SWBMessageServer}.
      * @param center    the {@link SWBMessageCenter}.
@@ -69,9 +97,10 @@ public class SWBMessageServer extends java.lang.Thread {
      * @throws SocketException if no socket connection could be established.
      */
     public SWBMessageServer(SWBMessageCenter center, InetAddress addr, int port) throws java.net.SocketException {
+        super("SWBMessageServer");
         this.center = center;
         getSocket(addr, port);
-        LOG.event("Message Server at:\t" + socket.getLocalAddress().getHostAddress() + ":" + port);
+        LOG.event("Message Server at:\t" + getLocalAddress() + ":" + port);
     }
 
     /**
@@ -80,6 +109,7 @@ public class SWBMessageServer extends java.lang.Thread {
      * @throws SocketException the socket exception
      */
     public SWBMessageServer(SWBMessageCenter center) throws java.net.SocketException {
+        super("SWBMessageServer");
         this.center = center;
         InetAddress addr = null;
         int port = 1500;
@@ -95,43 +125,118 @@ public class SWBMessageServer extends java.lang.Thread {
         }
 
         getSocket(addr, port);
-        LOG.event("Message Server at:\t" + socket.getLocalAddress().getHostAddress() + ":" + port);
+        LOG.event("Message Server at:\t" + getLocalAddress() + ":" + port);
     }
 
     /**
-     * Creates a new socket connection.
+     * Creates a new channel bound to the address and port, and the receive buffers and workers.
      * @param address {@link InetAddress}
      * @param port port.
      * @throws SocketException if no connection can be established.
      */
     private void getSocket(InetAddress address, int port) throws SocketException {
-        if (null != address) {
-            socket = new DatagramSocket(port, address);
-        } else {
-            socket = new DatagramSocket(port);
+        try {
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF,
+                    Integer.parseInt(SWBPlatform.getEnv("swb/messageReceiveBuffer", "4194304")));
+            channel.bind(null != address ? new InetSocketAddress(address, port) : new InetSocketAddress(port));
+        } catch (IOException e) {
+            SocketException se = new SocketException("Message Server bind error:" + port);
+            se.initCause(e);
+            throw se;
+        }
+
+        int count = Integer.parseInt(SWBPlatform.getEnv("swb/messageServerWorkers",
+                String.valueOf(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+        workers = new ExecutorService[Math.max(1, count)];
+        for (int i = 0; i < workers.length; i++) {
+            final String name = "SWBMessageWorker-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        buffers = new ArrayBlockingQueue<>(workers.length * 16);
+        for (int i = 0; i < workers.length * 16; i++) {
+            buffers.add(ByteBuffer.allocateDirect(PACKET_SIZE));
+        }
+    }
+
+    private String getLocalAddress() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getAddress().getHostAddress();
+        } catch (IOException e) {
+            return "";
         }
     }
 
     public void run() {
         LOG.info("Message Server Running...");
-        DatagramPacket packet = new DatagramPacket(new byte[PACKET_SIZE], PACKET_SIZE);
 
         while (!stop) {
+            ByteBuffer buf = null;
             try {
-                socket.receive(packet);
-                String msg = new String(packet.getData(), 0, packet.getLength());
-                LOG.debug("UDP Msg: " + msg + " ");
-                center.incomingMessage(msg, packet.getAddress().getHostAddress());
+                buf = buffers.take();
+                buf.clear();
+                InetSocketAddress source = (InetSocketAddress) channel.receive(buf);
+                buf.flip();
+                final ByteBuffer data = buf;
+                buf = null;
+                workers[(source.hashCode() & 0x7fffffff) % workers.length].execute(() -> process(data, source));
+            } catch (ClosedChannelException e) {
+                //stopServer closed the channel
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 LOG.error(e);
+            } finally {
+                if (buf != null) {
+                    buffers.offer(buf);
+                }
+            }
+        }
+        LOG.info("Message Server Stopped...");
+    }
+
+    /**
+     * Decodes a datagram and returns its buffer to the pool.
+     */
+    private void process(ByteBuffer buf, InetSocketAddress source) {
+        //Releases the connections leased applying the message
+        try (SQLCache_SWB.ThreadScope scope = SQLCache_SWB.openThreadScope()) {
+            ReliableChannel reliable = center.getReliableChannel();
+            if (reliable != null && ReliableChannel.isFrame(buf)) {
+                reliable.receive(buf, source);
+            } else if (SemanticChangeCodec.isMessage(buf)) {
+                center.incomingBinary(buf, source.getAddress().getHostAddress());
+            } else {
+                int length = buf.remaining();
+                byte[] data = SCRATCH.get();
+                buf.get(data, 0, length);
+                center.incomingMessage(new String(data, 0, length), source.getAddress().getHostAddress());
             }
+        } catch (Exception e) {
+            LOG.error(e);
+        } finally {
+            buffers.offer(buf);
         }
     }
 
     /**
-     * Sets this thread to be stopped on next loop.
+     * Stops the server, closing the channel unblocks a pending receive.
      */
     public void stopServer() {
         this.stop = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.error(e);
+        }
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
     }
 }
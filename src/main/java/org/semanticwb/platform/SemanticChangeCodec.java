@@ -0,0 +1,485 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import com.hp.hpl.jena.vocabulary.XSD;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary wire format of the {@link SemanticExternalChange} messages sent between the nodes of a cluster.
+ * <p>
+ * URIs are compressed with a dictionary of namespaces, each URI is sent as the varint id of its namespace and
+ * its local name. Each node builds its dictionary from the namespaces it knows and sends it to the other nodes
+ * in a DICT message when it starts and when a new node says hello, messages of an unknown dictionary are held
+ * by the receiver until the dictionary arrives (see {@link #encodeDictionaryRequest(long)}).
+ * URIs outside the dictionary are sent in full.
+ * <p>
+ * Message layout: magic, version, type, dictionary id, origin id and the payload of the type.
+ * <ul>
+ * <li>CHANGE: action, object URI, property URI and node.</li>
+ * <li>DICT: number of namespaces and the namespaces in id order.</li>
+ * <li>DICT_REQ: empty, the requested dictionary is the one of the header.</li>
+ * </ul>
+ * Strings are sent as a varint length and UTF-8 bytes, nodes as a tag followed by its fields.
+ *
+ * @author javier.solis.g
+ */
+public final class SemanticChangeCodec {
+    public static final int MAGIC = 0x53574243;
+    public static final byte VERSION = 1;
+    public static final byte CHANGE = 1;
+    public static final byte DICT = 2;
+    public static final byte DICT_REQ = 3;
+
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 8 + 8;
+
+    private static final byte NODE_NULL = 0;
+    private static final byte NODE_URI = 1;
+    private static final byte NODE_BLANK = 2;
+    private static final byte NODE_LITERAL = 3;
+    private static final byte NODE_LANG_LITERAL = 4;
+    private static final byte NODE_TYPED_LITERAL = 5;
+
+    private static final String[] ACTIONS = {null, SemanticObject.ACT_ADD, SemanticObject.ACT_REMOVE,
+            SemanticObject.ACT_SET, SemanticObject.ACT_CREATE, SemanticObject.ACT_CLONE};
+
+    private final long dictionaryId;
+    private final long origin;
+    private final String[] namespaces;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final ConcurrentHashMap<Long, String[]> dictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a codec with a dictionary of namespaces.
+     *
+     * @param namespaces the namespaces, ids are assigned in lexical order so nodes knowing the same
+     *                   namespaces share the dictionary.
+     */
+    public SemanticChangeCodec(Collection<String> namespaces) {
+        TreeSet<String> sorted = new TreeSet<>();
+        for (String ns : namespaces) {
+            if (ns != null && !ns.isEmpty()) {
+                sorted.add(ns);
+            }
+        }
+        this.namespaces = sorted.toArray(new String[sorted.size()]);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < this.namespaces.length; i++) {
+            ids.put(this.namespaces[i], i);
+            String ns = this.namespaces[i];
+            for (int j = 0; j < ns.length(); j++) {
+                h ^= ns.charAt(j);
+                h *= 0x100000001b3L;
+            }
+            h ^= '\n';
+            h *= 0x100000001b3L;
+        }
+        this.dictionaryId = h;
+        this.origin = new SecureRandom().nextLong();
+        dictionaries.put(dictionaryId, this.namespaces);
+    }
+
+    /**
+     * Creates a codec with the namespaces of the models and the schema of a {@link SemanticMgr}.
+     *
+     * @param mgr the manager
+     * @return the codec.
+     */
+    public static SemanticChangeCodec create(SemanticMgr mgr) {
+        TreeSet<String> ns = new TreeSet<>();
+        ns.add(RDF.getURI());
+        ns.add(RDFS.getURI());
+        ns.add(OWL.getURI());
+        ns.add(XSD.getURI());
+        ns.addAll(mgr.getSchema().getRDFOntModel().getNsPrefixMap().values());
+        for (Map.Entry<String, SemanticModel> entry : mgr.getModels()) {
+            ns.add(entry.getValue().getNameSpace());
+            ns.addAll(entry.getValue().getRDFModel().getNsPrefixMap().values());
+        }
+        return new SemanticChangeCodec(ns);
+    }
+
+    /**
+     * Gets the id of the dictionary of this codec.
+     * @return the id.
+     */
+    public long getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * Gets the number of namespaces of the dictionary.
+     * @return number of namespaces.
+     */
+    public int getDictionarySize() {
+        return namespaces.length;
+    }
+
+    /**
+     * Checks if a dictionary is known, messages of unknown dictionaries can not be decoded.
+     *
+     * @param id the dictionary id
+     * @return true if the dictionary is known.
+     */
+    public boolean knowsDictionary(long id) {
+        return dictionaries.containsKey(id);
+    }
+
+    /**
+     * Checks if a received datagram is a message of this format.
+     *
+     * @param buf datagram data between position and limit
+     * @return true if the datagram starts with the message magic.
+     */
+    public static boolean isMessage(ByteBuffer buf) {
+        return buf.remaining() >= HEADER_SIZE && buf.getInt(buf.position()) == MAGIC;
+    }
+
+    /**
+     * Gets the type of a message without consuming it.
+     *
+     * @param buf message data between position and limit
+     * @return the type.
+     */
+    public static byte getType(ByteBuffer buf) {
+        return buf.get(buf.position() + 5);
+    }
+
+    /**
+     * Gets the dictionary id of a message without consuming it.
+     *
+     * @param buf message data between position and limit
+     * @return the dictionary id.
+     */
+    public static long getDictionaryId(ByteBuffer buf) {
+        return buf.getLong(buf.position() + 6);
+    }
+
+    /**
+     * Checks if a message was encoded by this codec, nodes receive their own messages.
+     *
+     * @param buf message data between position and limit
+     * @return true if the message was sent by this node.
+     */
+    public boolean isLocal(ByteBuffer buf) {
+        return buf.getLong(buf.position() + 14) == origin;
+    }
+
+    /**
+     * Encodes a change.
+     *
+     * @param change the change
+     * @return the message.
+     */
+    public byte[] encode(SemanticExternalChange change) {
+        Output out = header(CHANGE, dictionaryId);
+        int action = actionId(change.getAction());
+        out.writeVarint(action);
+        if (action == 0) {
+            out.writeString(change.getAction());
+        }
+        writeURI(out, change.getObjURI());
+        writeURI(out, change.getPropURI());
+        writeNode(out, change.getNode());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a change message, the buffer position is moved to its end.
+     *
+     * @param buf message data between position and limit
+     * @return the change.
+     * @throws IOException if the message is invalid or its dictionary is unknown.
+     */
+    public SemanticExternalChange decode(ByteBuffer buf) throws IOException {
+        try {
+            long dict = readHeader(buf, CHANGE);
+            String[] table = dictionaries.get(dict);
+            if (table == null) {
+                throw new IOException("Unknown dictionary:" + Long.toHexString(dict));
+            }
+            int action = readVarint(buf);
+            String act = action == 0 ? readString(buf) : action < ACTIONS.length ? ACTIONS[action] : null;
+            if (act == null) {
+                throw new IOException("Unknown action:" + action);
+            }
+            String objURI = readURI(buf, table);
+            String propURI = readURI(buf, table);
+            Node node = readNode(buf, table);
+            return new SemanticExternalChange(objURI, propURI, node, act);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated change message", e);
+        }
+    }
+
+    /**
+     * Encodes the dictionary of this codec.
+     * @return the message.
+     */
+    public byte[] encodeDictionary() {
+        Output out = header(DICT, dictionaryId);
+        out.writeVarint(namespaces.length);
+        for (String ns : namespaces) {
+            out.writeString(ns);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a request of an unknown dictionary, the node owning it answers with its DICT message.
+     *
+     * @param id the dictionary id
+     * @return the message.
+     */
+    public byte[] encodeDictionaryRequest(long id) {
+        return header(DICT_REQ, id).toByteArray();
+    }
+
+    /**
+     * Decodes a dictionary message and registers the dictionary.
+     *
+     * @param buf message data between position and limit
+     * @return the dictionary id.
+     * @throws IOException if the message is invalid.
+     */
+    public long learnDictionary(ByteBuffer buf) throws IOException {
+        try {
+            long dict = readHeader(buf, DICT);
+            int count = readVarint(buf);
+            if (count < 0 || count > buf.remaining()) {
+                throw new IOException("Invalid dictionary size:" + count);
+            }
+            String[] table = new String[count];
+            for (int i = 0; i < count; i++) {
+                table[i] = readString(buf);
+            }
+            dictionaries.putIfAbsent(dict, table);
+            return dict;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated dictionary message", e);
+        }
+    }
+
+    private Output header(byte type, long dict) {
+        Output out = new Output();
+        out.writeInt(MAGIC);
+        out.write(VERSION);
+        out.write(type);
+        out.writeLong(dict);
+        out.writeLong(origin);
+        return out;
+    }
+
+    private static long readHeader(ByteBuffer buf, byte type) throws IOException {
+        if (buf.getInt() != MAGIC) {
+            throw new IOException("Invalid message");
+        }
+        byte version = buf.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported message version:" + version);
+        }
+        byte t = buf.get();
+        if (t != type) {
+            throw new IOException("Unexpected message type:" + t);
+        }
+        long dict = buf.getLong();
+        buf.getLong();
+        return dict;
+    }
+
+    private static int actionId(String action) {
+        for (int i = 1; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes a URI as namespace id plus one and local name, 0 means null and 1 a URI outside the dictionary.
+     */
+    private void writeURI(Output out, String uri) {
+        if (uri == null) {
+            out.writeVarint(0);
+            return;
+        }
+        int pos = uri.lastIndexOf('#');
+        if (pos < 0) {
+            pos = uri.lastIndexOf('/');
+        }
+        Integer id = pos > 0 ? ids.get(uri.substring(0, pos + 1)) : null;
+        if (id == null) {
+            out.writeVarint(1);
+            out.writeString(uri);
+        } else {
+            out.writeVarint(id + 2);
+            out.writeString(uri.substring(pos + 1));
+        }
+    }
+
+    private static String readURI(ByteBuffer buf, String[] table) throws IOException {
+        int id = readVarint(buf);
+        if (id == 0) {
+            return null;
+        } else if (id == 1) {
+            return readString(buf);
+        } else if (id - 2 < table.length) {
+            return table[id - 2].concat(readString(buf));
+        }
+        throw new IOException("Unknown namespace:" + (id - 2));
+    }
+
+    private void writeNode(Output out, Node node) {
+        if (node == null) {
+            out.write(NODE_NULL);
+        } else if (node.isURI()) {
+            out.write(NODE_URI);
+            writeURI(out, node.getURI());
+        } else if (node.isBlank()) {
+            out.write(NODE_BLANK);
+            out.writeString(node.getBlankNodeLabel());
+        } else if (node.isLiteral()) {
+            String lang = node.getLiteralLanguage();
+            String datatype = node.getLiteralDatatypeURI();
+            if (datatype != null) {
+                out.write(NODE_TYPED_LITERAL);
+                out.writeString(node.getLiteralLexicalForm());
+                writeURI(out, datatype);
+            } else if (lang != null && !lang.isEmpty()) {
+                out.write(NODE_LANG_LITERAL);
+                out.writeString(node.getLiteralLexicalForm());
+                out.writeString(lang);
+            } else {
+                out.write(NODE_LITERAL);
+                out.writeString(node.getLiteralLexicalForm());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported node:" + node);
+        }
+    }
+
+    private static Node readNode(ByteBuffer buf, String[] table) throws IOException {
+        byte tag = buf.get();
+        switch (tag) {
+            case NODE_NULL:
+                return null;
+            case NODE_URI:
+                return Node.createURI(readURI(buf, table));
+            case NODE_BLANK:
+                return Node.createAnon(new AnonId(readString(buf)));
+            case NODE_LITERAL:
+                return Node.createLiteral(readString(buf));
+            case NODE_LANG_LITERAL:
+                return Node.createLiteral(readString(buf), readString(buf), false);
+            case NODE_TYPED_LITERAL:
+                String lex = readString(buf);
+                RDFDatatype dt = TypeMapper.getInstance().getSafeTypeByName(readURI(buf, table));
+                return Node.createLiteral(lex, null, dt);
+            default:
+                throw new IOException("Unknown node tag:" + tag);
+        }
+    }
+
+    private static int readVarint(ByteBuffer buf) throws IOException {
+        int ret = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buf.get();
+            ret |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return ret;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private static String readString(ByteBuffer buf) throws IOException {
+        int length = readVarint(buf);
+        if (length < 0 || length > buf.remaining()) {
+            throw new IOException("Invalid string length:" + length);
+        }
+        String ret;
+        if (buf.hasArray()) {
+            ret = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] data = new byte[length];
+            buf.get(data);
+            ret = new String(data, StandardCharsets.UTF_8);
+        }
+        return ret;
+    }
+
+    /**
+     * Growable output buffer with the primitives of the format.
+     */
+    private static final class Output extends ByteArrayOutputStream {
+        Output() {
+            super(128);
+        }
+
+        void writeInt(int v) {
+            write(v >>> 24);
+            write(v >>> 16);
+            write(v >>> 8);
+            write(v);
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        void writeVarint(int v) {
+            while ((v & ~0x7f) != 0) {
+                write((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            write(v);
+        }
+
+        void writeString(String s) {
+            byte[] data = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(data.length);
+            write(data, 0, data.length);
+        }
+    }
+}
@@ -38,6 +38,7 @@ import org.semanticwb.model.GenericObject;
 
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.semanticwb.SWBUtils.TEXT.getPlural;
 import static org.semanticwb.SWBUtils.TEXT.capitalize;
@@ -218,7 +219,7 @@ public class SemanticClass {
         mProps = new HashMap<>();
         hierarchicalProps = new ArrayList<>();
         inverseHierarchicalProps = new ArrayList<>();
-        mObservers = Collections.synchronizedList(new ArrayList<>());
+        mObservers = new CopyOnWriteArrayList<>();
 
         for (Iterator i = mClass.listDeclaredProperties(false); i.hasNext(); ) {
             Property prop = (Property) i.next();
@@ -1370,6 +1371,7 @@ public class SemanticClass {
      */
     public void registerObserver(SemanticObserver obs) {
         mObservers.add(obs);
+        SubscriptionIndex.invalidate();
     }
 
     /**
@@ -1379,6 +1381,16 @@ public class SemanticClass {
      */
     public void removeObserver(SemanticObserver obs) {
         mObservers.remove(obs);
+        SubscriptionIndex.invalidate();
+    }
+
+    /**
+     * Gets the observers.
+     *
+     * @return the observers
+     */
+    List<SemanticObserver> getObservers() {
+        return mObservers;
     }
 
     /**
@@ -1388,7 +1400,10 @@ public class SemanticClass {
      * @param prop   the prop
      * @param lang   the lang
      * @param action the action
+     * @deprecated observers of the class are called by {@link SemanticMgr#notifyChange(SemanticObject, Object, String, String)}
+     * through its SubscriptionIndex, calling this method skips the model observers and subscriptions.
      */
+    @Deprecated
     public void notifyChange(SemanticObject obj, Object prop, String lang, String action) {
         Iterator it = mObservers.iterator();
         while (it.hasNext()) {
@@ -0,0 +1,394 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.db.impl.SQLCache_SWB;
+import org.semanticwb.Logger;
+import org.semanticwb.SWBUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches the changes notified by {@link SemanticMgr#notifyChange(SemanticObject, Object, String, String)}
+ * to subscribed {@link SemanticObserver}s.
+ * <p>
+ * Each subscription declares the classes and properties it observes and how it is called:
+ * <ul>
+ * <li>{@link Mode#SYNC}: on the thread making the change.</li>
+ * <li>{@link Mode#ASYNC_ORDERED}: one by one on a thread of the subscription, in the order of the changes.</li>
+ * <li>{@link Mode#ASYNC_BATCHED}: on a thread of the subscription with the changes queued since the last call,
+ * see {@link SemanticBatchObserver}.</li>
+ * </ul>
+ * Asynchronous subscriptions have a bounded queue, changes are dropped and counted while it is full so a slow
+ * observer never blocks the writers.
+ *
+ * @author javier.solis.g
+ */
+public final class SemanticEventBus {
+    private static final Logger LOG = SWBUtils.getLogger(SemanticEventBus.class);
+
+    /** Max changes of a batch. */
+    private static final int MAX_BATCH = 1024;
+
+    /**
+     * Dispatch mode of a subscription.
+     */
+    public enum Mode {
+        SYNC,
+        ASYNC_ORDERED,
+        ASYNC_BATCHED
+    }
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * A change of a {@link SemanticObject}.
+     */
+    public static final class Event {
+        private final SemanticObject obj;
+        private final Object prop;
+        private final String lang;
+        private final String action;
+
+        Event(SemanticObject obj, Object prop, String lang, String action) {
+            this.obj = obj;
+            this.prop = prop;
+            this.lang = lang;
+            this.action = action;
+        }
+
+        /**
+         * Gets the changed object.
+         * @return the object.
+         */
+        public SemanticObject getObject() {
+            return obj;
+        }
+
+        /**
+         * Gets the changed property, a {@link SemanticProperty} or other value for changes of the whole object.
+         * @return the property or null.
+         */
+        public Object getProperty() {
+            return prop;
+        }
+
+        /**
+         * Gets the language.
+         * @return the language or null.
+         */
+        public String getLang() {
+            return lang;
+        }
+
+        /**
+         * Gets the action.
+         * @return the action.
+         */
+        public String getAction() {
+            return action;
+        }
+    }
+
+    /**
+     * A subscribed observer with its filters and metrics.
+     */
+    public static final class Subscription {
+        private final SemanticObserver observer;
+        private final Mode mode;
+        private final Set<SemanticClass> classes;
+        private final Set<SemanticProperty> properties;
+        private final Set<String> actions;
+        private final BlockingQueue<Event> queue;
+        private final Thread worker;
+        private volatile boolean closed = false;
+
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong time = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+
+        private Subscription(SemanticObserver observer, Mode mode, Collection<SemanticClass> classes,
+                             Collection<SemanticProperty> properties, Collection<String> actions, int capacity) {
+            this.observer = observer;
+            this.mode = mode;
+            this.classes = classes == null ? Collections.<SemanticClass>emptySet() : new HashSet<>(classes);
+            this.properties = properties == null ? Collections.<SemanticProperty>emptySet() : new HashSet<>(properties);
+            this.actions = actions == null ? Collections.<String>emptySet() : new HashSet<>(actions);
+            if (mode == Mode.SYNC) {
+                queue = null;
+                worker = null;
+            } else {
+                queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+                worker = new Thread(this::work, "SemanticEventBus-" + observer.getClass().getSimpleName());
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+
+        /**
+         * Checks if the subscription observes a change. Changes of the whole object (not of a
+         * {@link SemanticProperty}) are only filtered by class.
+         */
+        boolean matches(SemanticClass cls, Object prop, String action) {
+            if (!actions.isEmpty() && !actions.contains(action)) {
+                return false;
+            }
+            if (!classes.isEmpty() && !observes(cls)) {
+                return false;
+            }
+            return properties.isEmpty() || !(prop instanceof SemanticProperty) || properties.contains(prop);
+        }
+
+        private boolean observes(SemanticClass cls) {
+            if (cls == null) {
+                return false;
+            }
+            if (classes.contains(cls)) {
+                return true;
+            }
+            for (SemanticClass c : classes) {
+                if (cls.isSubClass(c)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void dispatch(Event event) {
+            if (queue == null) {
+                call(Collections.singletonList(event));
+            } else if (!queue.offer(event)) {
+                long drops = dropped.incrementAndGet();
+                if (drops == 1 || drops % 10000 == 0) {
+                    LOG.warn("SemanticEventBus queue full, " + observer.getClass().getName() + " dropped:" + drops);
+                }
+            }
+        }
+
+        private void work() {
+            List<Event> batch = new ArrayList<>();
+            while (!closed) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(batch, MAX_BATCH - 1);
+                //Releases the connections leased by the batch
+                try (SQLCache_SWB.ThreadScope scope = SQLCache_SWB.openThreadScope()) {
+                    if (mode == Mode.ASYNC_BATCHED) {
+                        call(batch);
+                    } else {
+                        for (Event event : batch) {
+                            call(Collections.singletonList(event));
+                        }
+                    }
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void call(List<Event> events) {
+            long start = System.nanoTime();
+            try {
+                if (mode == Mode.ASYNC_BATCHED && observer instanceof SemanticBatchObserver) {
+                    ((SemanticBatchObserver) observer).notifyBatch(Collections.unmodifiableList(events));
+                } else {
+                    for (Event event : events) {
+                        observer.notify(event.obj, event.prop, event.lang, event.action);
+                    }
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                LOG.error(e);
+            }
+            long elapsed = (System.nanoTime() - start) / 1000;
+            dispatched.addAndGet(events.size());
+            time.addAndGet(elapsed);
+            long max = maxTime.get();
+            while (elapsed > max && !maxTime.compareAndSet(max, elapsed)) {
+                max = maxTime.get();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+
+        /**
+         * Gets the observer.
+         * @return the observer.
+         */
+        public SemanticObserver getObserver() {
+            return observer;
+        }
+
+        /**
+         * Gets the dispatch mode.
+         * @return the mode.
+         */
+        public Mode getMode() {
+            return mode;
+        }
+
+        /**
+         * Gets the number of changes delivered to the observer.
+         * @return number of changes.
+         */
+        public long getDispatched() {
+            return dispatched.get();
+        }
+
+        /**
+         * Gets the number of calls to the observer that threw an exception.
+         * @return number of errors.
+         */
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * Gets the number of changes dropped because the queue was full.
+         * @return number of changes.
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * Gets the number of changes waiting in the queue.
+         * @return number of changes.
+         */
+        public int getQueued() {
+            return queue != null ? queue.size() : 0;
+        }
+
+        /**
+         * Gets the total time spent in the observer.
+         * @return time in microseconds.
+         */
+        public long getTime() {
+            return time.get();
+        }
+
+        /**
+         * Gets the longest call to the observer.
+         * @return time in microseconds.
+         */
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+    }
+
+    /**
+     * Subscribes an observer.
+     *
+     * @param observer   the observer
+     * @param mode       dispatch mode
+     * @param classes    observed classes, their subclasses are also observed. Null or empty for all classes
+     * @param properties observed properties, null or empty for all properties
+     * @param capacity   max changes waiting in the queue of asynchronous subscriptions
+     * @return the subscription.
+     */
+    public Subscription subscribe(SemanticObserver observer, Mode mode, Collection<SemanticClass> classes,
+                                  Collection<SemanticProperty> properties, int capacity) {
+        return subscribe(observer, mode, classes, properties, null, capacity);
+    }
+
+    /**
+     * Subscribes an observer to some actions.
+     *
+     * @param observer   the observer
+     * @param mode       dispatch mode
+     * @param classes    observed classes, their subclasses are also observed. Null or empty for all classes
+     * @param properties observed properties, null or empty for all properties
+     * @param actions    observed actions, null or empty for all actions
+     * @param capacity   max changes waiting in the queue of asynchronous subscriptions
+     * @return the subscription.
+     */
+    public Subscription subscribe(SemanticObserver observer, Mode mode, Collection<SemanticClass> classes,
+                                  Collection<SemanticProperty> properties, Collection<String> actions,
+                                  int capacity) {
+        Subscription ret = new Subscription(observer, mode, classes, properties, actions, capacity);
+        subscriptions.add(ret);
+        SubscriptionIndex.invalidate();
+        return ret;
+    }
+
+    /**
+     * Removes a subscription, changes waiting in its queue are discarded.
+     *
+     * @param subscription the subscription
+     */
+    public void unsubscribe(Subscription subscription) {
+        if (subscriptions.remove(subscription)) {
+            SubscriptionIndex.invalidate();
+            subscription.close();
+        }
+    }
+
+    /**
+     * Removes all the subscriptions of an observer.
+     *
+     * @param observer the observer
+     */
+    public void unsubscribe(SemanticObserver observer) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.observer == observer) {
+                unsubscribe(subscription);
+            }
+        }
+    }
+
+    /**
+     * Gets the subscriptions.
+     * @return unmodifiable list of subscriptions.
+     */
+    public List<Subscription> getSubscriptions() {
+        return Collections.unmodifiableList(subscriptions);
+    }
+
+    /**
+     * Removes all the subscriptions stopping their threads.
+     */
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            unsubscribe(subscription);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Change of a {@link SemanticObject} made by another node of the cluster.
+ *
+ * @author javier.solis.g
+ */
+public final class SemanticExternalChange {
+    private final String objURI;
+    private final String propURI;
+    private final Node node;
+    private final String action;
+
+    /**
+     * Creates a change.
+     *
+     * @param objURI  changed object URI
+     * @param propURI changed property URI, null if the whole object changed
+     * @param node    value of the property, may be null
+     * @param action  the action (one of {@link SemanticObject#ACT_ADD} or {@link SemanticObject#ACT_REMOVE}).
+     */
+    public SemanticExternalChange(String objURI, String propURI, Node node, String action) {
+        this.objURI = objURI;
+        this.propURI = propURI;
+        this.node = node;
+        this.action = action;
+    }
+
+    /**
+     * Gets the changed object URI.
+     * @return the URI.
+     */
+    public String getObjURI() {
+        return objURI;
+    }
+
+    /**
+     * Gets the changed property URI.
+     * @return the URI or null.
+     */
+    public String getPropURI() {
+        return propURI;
+    }
+
+    /**
+     * Gets the value of the property.
+     * @return the node or null.
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * Gets the action.
+     * @return the action.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    @Override
+    public String toString() {
+        return action + " " + objURI + " " + propURI + " " + node;
+    }
+}
@@ -65,7 +65,18 @@ public class SemanticIterator<T extends SemanticObject> implements Iterator {
      * @param invert   whether to check inverse properties on Resources.
      */
     public SemanticIterator(Iterator iterator, boolean invert) {
-        this.iterator = iterator;
+        this(iterator, invert, false);
+    }
+
+    /**
+     * Creates a new {@link SemanticIterator} using a generic {@link Iterator}.
+     *
+     * @param iterator the {@link Iterator}
+     * @param invert   whether to check inverse properties on Resources.
+     * @param prefetch whether to load the objects in batches, for callers that consume the whole iterator.
+     */
+    public SemanticIterator(Iterator iterator, boolean invert, boolean prefetch) {
+        this.iterator = prefetch ? SemanticPrefetchIterator.wrap(iterator, invert) : iterator;
         if (this.iterator == null) {
             this.iterator = new ArrayList().iterator();
         }
@@ -81,8 +92,21 @@ public class SemanticIterator<T extends SemanticObject> implements Iterator {
      * @param model    the objects class
      */
     public SemanticIterator(Iterator iterator, boolean invert, SemanticModel model, SemanticClass cls) {
+        this(iterator, invert, false, model, cls);
+    }
+
+    /**
+     * Creates a new {@link SemanticIterator} using a generic {@link Iterator}.
+     *
+     * @param iterator the {@link Iterator}
+     * @param invert   whether to check inverse properties on Resources.
+     * @param prefetch whether to load the objects in batches, for callers that consume the whole iterator.
+     * @param model    the objects model
+     * @param cls      the objects class
+     */
+    public SemanticIterator(Iterator iterator, boolean invert, boolean prefetch, SemanticModel model, SemanticClass cls) {
         //TODO: Check why model and cls are needed. They are not used anywhere in code
-        this(iterator, invert);
+        this(iterator, invert, prefetch);
         this.model = model;
         this.cls = cls;
     }
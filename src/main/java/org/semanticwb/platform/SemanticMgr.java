@@ -23,6 +23,7 @@
 package org.semanticwb.platform;
 
 import com.hp.hpl.jena.db.ModelRDB;
+import com.hp.hpl.jena.db.impl.SQLCache_SWB;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.OntModelSpec;
@@ -34,6 +35,7 @@ import org.semanticwb.Logger;
 import org.semanticwb.SWBPlatform;
 import org.semanticwb.SWBUtils;
 import org.semanticwb.rdf.AbstractStore;
+import org.semanticwb.rdf.BulkLoadGraph;
 import org.semanticwb.rdf.GraphCached;
 import org.semanticwb.rdf.RemoteGraph;
 
@@ -45,6 +47,13 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class responsible for managing {@link SemanticObject}s (RDF resources) and related ontology.
@@ -87,6 +96,11 @@ public class SemanticMgr implements SWBInstanceObject {
     public static final String SWBAdminURI = "http://www.semanticwb.org/SWBAdmin#";
     public static final String SWBOntEdit = "SWBOntEdit";
 
+    /**
+     * Message sent to the other nodes when a model is created or removed.
+     */
+    static final String MODELS_MESSAGE = "mdl|upd|";
+
     private SemanticOntology ontology;
     private SemanticOntology schema;
     /**
@@ -100,12 +114,31 @@ public class SemanticMgr implements SWBInstanceObject {
     private HashMap<String, SemanticModel> namespacedModels = null;
     private HashMap<Model, SemanticModel> internalModels = null;
     private HashMap<String, SemanticModel> baseModels = null;
+    /**
+     * Routes subject URIs to the {@link SemanticModel}s that may contain them.
+     */
+    private final ModelRoutingIndex routingIndex = new ModelRoutingIndex();
     private SemanticVocabulary vocabulary;
     private List<SemanticObserver> modelObservers = null;
     private List<SemanticTSObserver> tsObservers = null;
+    private final SemanticEventBus eventBus = new SemanticEventBus();
+    private SubscriptionIndex subscriptionIndex = null;
     private CodePackage codepackage = null;
     private AbstractStore store = null;
 
+    /**
+     * Remote changes waiting for the end of the batch window.
+     */
+    private final Object externalLock = new Object();
+    private List<SemanticExternalChange> externalChanges = new ArrayList<>();
+    private volatile long externalChangeWindow = 20;
+    private volatile boolean binaryChanges = false;
+    private final ScheduledExecutorService externalExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SemanticExternalChanges");
+        t.setDaemon(true);
+        return t;
+    });
+
     /**
      * Sets Model specification to use by the {@link SemanticMgr}.
      * @param modelSchema Enum value for the Schema.
@@ -168,8 +201,9 @@ public class SemanticMgr implements SWBInstanceObject {
         namespacedModels = new HashMap<>();
         internalModels = new HashMap<>();   //Arreglo de RDFModel
         baseModels = new HashMap<>();       //Arreglo de RDFModel
-        modelObservers = Collections.synchronizedList(new ArrayList<>());
-        tsObservers = Collections.synchronizedList(new ArrayList<>());
+        modelObservers = new CopyOnWriteArrayList<>();
+        tsObservers = new CopyOnWriteArrayList<>();
+        subscriptionIndex = new SubscriptionIndex(modelObservers, eventBus);
 
 
         OntModelSpec modelSpec = getModelSpec();
@@ -241,6 +275,9 @@ public class SemanticMgr implements SWBInstanceObject {
                 semobjModelCache.add(st.nextToken());
             }
         }
+        configureObjectCache();
+        externalChangeWindow = Long.parseLong(SWBPlatform.getEnv("swb/externalChangeWindow", "20"));
+        binaryChanges = Boolean.parseBoolean(SWBPlatform.getEnv("swb/messageBinaryChanges", "false"));
 
         String clsname = "org.semanticwb.rdf.RDBStore";
         if (SWBPlatform.isSDB()) {
@@ -279,6 +316,26 @@ public class SemanticMgr implements SWBInstanceObject {
         store.init();
     }
 
+    /**
+     * Configures the bounds and eviction policy of the {@link SemanticObject} cache.
+     * Models with full cache are pinned and are not affected by the bounds.
+     */
+    private void configureObjectCache() {
+        long maxEntries = Long.parseLong(SWBPlatform.getEnv("swb/semanticObjectCacheSize", "0"));
+        long maxWeight = Long.parseLong(SWBPlatform.getEnv("swb/semanticObjectCacheMemory", "0"));
+        int modelQuota = Integer.parseInt(SWBPlatform.getEnv("swb/semanticObjectModelQuota", "0"));
+        SemanticObjectCache.Policy policy = SemanticObjectCache.Policy.valueOf(
+                SWBPlatform.getEnv("swb/semanticObjectCachePolicy", "SLRU").toUpperCase());
+
+        SemanticObject.getCache().configure(maxEntries, maxWeight, modelQuota, policy);
+        log.event("SemanticObjectCache:" + policy + " size:" + maxEntries + " memory:" + maxWeight + " modelQuota:" + modelQuota);
+
+        int missSize = Integer.parseInt(SWBPlatform.getEnv("swb/semanticObjectMissCacheSize", "10000"));
+        long missTTL = Long.parseLong(SWBPlatform.getEnv("swb/semanticObjectMissTTL", "60000"));
+        SemanticObject.configureNotFoundCache(missSize, missTTL);
+        SemanticObject.setPrefetchWindow(Integer.parseInt(SWBPlatform.getEnv("swb/semanticIteratorPrefetch", "32")));
+    }
+
     /**
      * Loads an ontology model from a path or URI and adds it to the {@link SemanticMgr}'s base ontologies.
      * @param filePathOrURI the ontology file path or URI.
@@ -336,7 +393,9 @@ public class SemanticMgr implements SWBInstanceObject {
             log.info("-->Loading Remote Model: " + uri);
             URLConnection u = new URL(uri).openConnection();
             u.connect();
-            return ModelFactory.createModelForGraph(new RemoteGraph(uri));
+            int cacheSize = Integer.parseInt(SWBPlatform.getEnv("swb/remoteGraphCacheSize", "0"));
+            long cacheTTL = Long.parseLong(SWBPlatform.getEnv("swb/remoteGraphCacheTTL", "30000"));
+            return ModelFactory.createModelForGraph(new RemoteGraph(uri, cacheSize, cacheTTL));
         } catch (IOException e) {
             log.warn("-->Can´t create remote model: " + uri);
         }
@@ -501,6 +560,23 @@ public class SemanticMgr implements SWBInstanceObject {
         return namespacedModels.get(nameSpace);
     }
 
+    /**
+     * Gets the routing index of subject URIs.
+     * @return the routing index
+     */
+    ModelRoutingIndex getRoutingIndex() {
+        return routingIndex;
+    }
+
+    /**
+     * Gets the models that may contain a subject URI, used when the URI namespace does not match a model.
+     * @param uri subject URI
+     * @return list of candidate models
+     */
+    List<SemanticModel> getModelsBySubject(String uri) {
+        return routingIndex.route(uri);
+    }
+
     /**
      * Gets a model.
      * @param model the model
@@ -531,6 +607,9 @@ public class SemanticMgr implements SWBInstanceObject {
      */
     public void loadTripleStoreModels() {
         log.debug("loadDBModels");
+        List<SemanticModel> cachedModels = new ArrayList<>();
+        //Scanning the subjects of every model slows down the start, models with full cache build it while loading
+        boolean subjectFilter = Boolean.parseBoolean(SWBPlatform.getEnv("swb/semanticObjectSubjectFilter", "false"));
 
         //LoadModels
         Iterator<String> it = store.listModelNames();
@@ -543,9 +622,59 @@ public class SemanticMgr implements SWBInstanceObject {
             if ((semobjCache || semobjModelCache.contains(name)) && !(model.getRDFModel().getGraph() instanceof GraphCached)) {
                 //Se cambia cache de grafo por cache de semanticObjects
                 if (userRepCache || !name.endsWith("_usr")) {
-                    log.event("Loading SemanticObject:" + name + " FullCache");
+                    cachedModels.add(model);
+                    continue;
+                }
+            }
+            if (subjectFilter) {
+                //Models with full cache build the filter while loading
+                model.buildSubjectFilter();
+            }
+        }
+        loadFullCache(cachedModels);
+    }
+
+    /**
+     * Loads the full {@link SemanticObject} cache of independent models concurrently.
+     * The number of models loaded at once is set by <code>swb/modelLoadThreads</code>.
+     *
+     * @param models models to load
+     */
+    private void loadFullCache(List<SemanticModel> models) {
+        int threads = Integer.parseInt(SWBPlatform.getEnv("swb/modelLoadThreads",
+                String.valueOf(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+        threads = Math.min(threads, models.size());
+
+        if (threads <= 1) {
+            for (SemanticModel model : models) {
+                log.event("Loading SemanticObject:" + model.getName() + " FullCache");
+                SemanticObject.loadFullCache(model);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> loads = new ArrayList<>();
+        for (SemanticModel model : models) {
+            loads.add(executor.submit(() -> {
+                //Releases the connections leased by the load
+                try (SQLCache_SWB.ThreadScope scope = SQLCache_SWB.openThreadScope()) {
+                    log.event("Loading SemanticObject:" + model.getName() + " FullCache");
                     SemanticObject.loadFullCache(model);
                 }
+            }));
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < loads.size(); i++) {
+            try {
+                loads.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                break;
+            } catch (ExecutionException e) {
+                log.error("Error Loading SemanticObject:" + models.get(i).getName(), e.getCause());
             }
         }
     }
@@ -641,7 +770,7 @@ public class SemanticMgr implements SWBInstanceObject {
                         ModelRDB m = (ModelRDB) model;
                         try {
                             m.begin();
-                            m.read(in, null, "N-TRIPLE");
+                            readBulk(m, in, "N-TRIPLE");
                             in.close();
                         } catch (Exception e) {
                             log.error(e);
@@ -649,7 +778,7 @@ public class SemanticMgr implements SWBInstanceObject {
                             m.commit();
                         }
                     } else {
-                        model.read(in, null, "N-TRIPLE");
+                        readBulk(model, in, "N-TRIPLE");
                         in.close();
                     }
                 } catch (Exception e) {
@@ -680,7 +809,7 @@ public class SemanticMgr implements SWBInstanceObject {
                         ModelRDB m = (ModelRDB) model;
                         try {
                             m.begin();
-                            m.read(in, null, "N-TRIPLE");
+                            readBulk(m, in, "N-TRIPLE");
                             in.close();
                         } catch (Exception e) {
                             log.error(e);
@@ -688,7 +817,7 @@ public class SemanticMgr implements SWBInstanceObject {
                             m.commit();
                         }
                     } else {
-                        model.read(in, null, "N-TRIPLE");
+                        readBulk(model, in, "N-TRIPLE");
                         in.close();
                     }
                 } catch (Exception e) {
@@ -720,6 +849,23 @@ public class SemanticMgr implements SWBInstanceObject {
         return m;
     }
 
+    /**
+     * Gets the name spaces known for a model, its own and the ones of its prefix map.
+     */
+    private static List<String> namespaces(SemanticModel model) {
+        List<String> ret = new ArrayList<>();
+        try {
+            String ns = model.getNameSpace();
+            if (ns != null) {
+                ret.add(ns);
+            }
+            ret.addAll(model.getRDFModel().getNsPrefixMap().values());
+        } catch (Exception e) {
+            log.debug("Name spaces not available:" + model.getName());
+        }
+        return ret;
+    }
+
     /**
      * Adds a model to the {@link SemanticMgr} models.
      * @param model Model
@@ -728,7 +874,17 @@ public class SemanticMgr implements SWBInstanceObject {
     public void addModel(SemanticModel model, boolean add) {
         log.debug("Add NS:" + model.getNameSpace() + " " + model.getName());
 
-        namedModels.put(model.getName(), model);
+        SemanticModel old = namedModels.put(model.getName(), model);
+        if (old != null && old != model) {
+            routingIndex.remove(old);
+        }
+        if (Boolean.parseBoolean(SWBPlatform.getEnv("swb/semanticObjectRouteByNamespace", "true"))) {
+            //Candidate for the URIs of its name spaces until its subjects are registered
+            routingIndex.trackNamespaces(model, namespaces(model));
+        } else {
+            //Candidate for every URI until its subjects are registered
+            routingIndex.untrack(model);
+        }
         namespacedModels.put(model.getNameSpace(), model);
         internalModels.put(model.getRDFModel(), model);
         if (add) {
@@ -775,7 +931,11 @@ public class SemanticMgr implements SWBInstanceObject {
 
         Model model = loadRDFDBModel(name);
         model.setNsPrefix(name, nameSpace);
-        return loadTripleStoreModel(name, model, cached);
+        SemanticModel smodel = loadTripleStoreModel(name, model, cached);
+        //Subjects added from now on are registered by the filter listener
+        smodel.buildSubjectFilter();
+        notifyModelsChanged(name);
+        return smodel;
     }
 
     /**
@@ -834,7 +994,7 @@ public class SemanticMgr implements SWBInstanceObject {
             if (model.supportsTransactions()) {
                 try {
                     model.begin();
-                    model.read(in, null, lang);
+                    readBulk(model, in, lang);
                     in.close();
                 } catch (Exception e) {
                     log.error(e);
@@ -842,7 +1002,7 @@ public class SemanticMgr implements SWBInstanceObject {
                     model.commit();
                 }
             } else {
-                model.read(in, null, lang);
+                readBulk(model, in, lang);
                 in.close();
             }
             //Limpia cache provisional
@@ -852,6 +1012,26 @@ public class SemanticMgr implements SWBInstanceObject {
         return ret;
     }
 
+    /**
+     * Reads RDF statements into a model sending them to the store in batches of swb/rdbBulkBatchSize triples.
+     *
+     * @param model target model
+     * @param in    {@link InputStream} object
+     * @param lang  RDF language
+     */
+    private void readBulk(Model model, InputStream in, String lang) {
+        int batchSize = Integer.parseInt(SWBPlatform.getEnv("swb/rdbBulkBatchSize", "1000"));
+        BulkLoadGraph graph = new BulkLoadGraph(model.getGraph(), batchSize);
+        long time = System.currentTimeMillis();
+        try {
+            ModelFactory.createModelForGraph(graph).read(in, null, lang);
+        } finally {
+            //Triples read before a parse error are stored as with a plain read
+            graph.flush();
+        }
+        log.debug("Bulk loaded " + graph.getCount() + " triples in " + (System.currentTimeMillis() - time) + "ms");
+    }
+
     /**
      * Removes a named model.
      * @param name model name
@@ -863,9 +1043,22 @@ public class SemanticMgr implements SWBInstanceObject {
 
         namespacedModels.remove(model.getNameSpace());
         internalModels.remove(model.getRDFModel());
+        routingIndex.remove(model);
         ontology.removeSubModel(model, true);
 
         store.removeModel(name);
+        notifyModelsChanged(name);
+    }
+
+    /**
+     * Tells the other nodes of the cluster to reload the model names of their store.
+     * @param name the created or removed model
+     */
+    private void notifyModelsChanged(String name) {
+        SWBMessageCenter center = SWBPlatform.getMessageCenter();
+        if (center != null) {
+            center.sendMessage(MODELS_MESSAGE + name);
+        }
     }
 
     /**
@@ -898,6 +1091,7 @@ public class SemanticMgr implements SWBInstanceObject {
      */
     public void registerObserver(SemanticObserver observer) {
         modelObservers.add(observer);
+        SubscriptionIndex.invalidate();
     }
 
     /**
@@ -906,6 +1100,51 @@ public class SemanticMgr implements SWBInstanceObject {
      */
     public void removeObserver(SemanticObserver observer) {
         modelObservers.remove(observer);
+        eventBus.unsubscribe(observer);
+        SubscriptionIndex.invalidate();
+    }
+
+    /**
+     * Registers a model observer with a dispatch mode, the observer is only called for changes of the given
+     * classes (and their subclasses) and properties.
+     *
+     * @param observer   the observer
+     * @param mode       the dispatch mode
+     * @param classes    observed classes, null for all classes
+     * @param properties observed properties, null for all properties
+     * @return the subscription, holds the metrics of the observer.
+     */
+    public SemanticEventBus.Subscription registerObserver(SemanticObserver observer, SemanticEventBus.Mode mode,
+                                                          Collection<SemanticClass> classes,
+                                                          Collection<SemanticProperty> properties) {
+        return registerObserver(observer, mode, classes, properties, null);
+    }
+
+    /**
+     * Registers a model observer with a dispatch mode, the observer is only called for the given actions on
+     * the given classes (and their subclasses) and properties.
+     *
+     * @param observer   the observer
+     * @param mode       the dispatch mode
+     * @param classes    observed classes, null for all classes
+     * @param properties observed properties, null for all properties
+     * @param actions    observed actions, null for all actions
+     * @return the subscription, holds the metrics of the observer.
+     */
+    public SemanticEventBus.Subscription registerObserver(SemanticObserver observer, SemanticEventBus.Mode mode,
+                                                          Collection<SemanticClass> classes,
+                                                          Collection<SemanticProperty> properties,
+                                                          Collection<String> actions) {
+        int capacity = Integer.parseInt(SWBPlatform.getEnv("swb/observerQueueSize", "10000"));
+        return eventBus.subscribe(observer, mode, classes, properties, actions, capacity);
+    }
+
+    /**
+     * Gets the event bus dispatching the changes to the observers registered with a dispatch mode.
+     * @return the event bus.
+     */
+    public SemanticEventBus getEventBus() {
+        return eventBus;
     }
 
     /**
@@ -961,33 +1200,8 @@ public class SemanticMgr implements SWBInstanceObject {
             return;
         }
 
-        //Notifies Model observers
-        for (SemanticObserver observer : modelObservers) {
-            try {
-                observer.notify(obj, prop, lang, action);
-            } catch (Exception e) {
-                log.error(e);
-            }
-        }
-
-        //Notifies SemanticClass observers
-        SemanticClass cls = obj.getSemanticClass();
-        if (cls != null) {
-            try {
-                cls.notifyChange(obj, prop, lang, action);
-            } catch (Exception e) {
-                log.error(e);
-            }
-        }
-
-        //Notifies SemanticProperty observers
-        if (prop instanceof SemanticProperty) {
-            try {
-                ((SemanticProperty) prop).notifyChange(obj, prop, lang, action);
-            } catch (Exception e) {
-                log.error(e);
-            }
-        }
+        //Model, SemanticClass and SemanticProperty observers and subscriptions, memoized per class, property and action
+        subscriptionIndex.get(obj.getSemanticClass(), prop, action).notify(obj, prop, lang, action);
     }
 
     /**
@@ -1011,6 +1225,12 @@ public class SemanticMgr implements SWBInstanceObject {
      */
     public void notifyTSChange(SemanticObject obj, Statement stmt, String action, boolean remote) {
         if (obj != null && obj.getURI() != null) {
+            if (SemanticObject.ACT_ADD.equals(action) && obj.getModel() != null) {
+                routingIndex.add(obj.getURI(), obj.getModel());
+            }
+            if (!remote) {
+                sendChange(obj, stmt, action);
+            }
             for(SemanticTSObserver observer : tsObservers) {
                 try {
                     observer.notify(obj, stmt, action, remote);
@@ -1021,6 +1241,53 @@ public class SemanticMgr implements SWBInstanceObject {
         }
     }
 
+    /**
+     * Notifies several changes of an object to registered observers with a single
+     * {@link SemanticTSObserver#notifyBatch(SemanticObject, List, List, boolean)} call.
+     *
+     * @param obj       the changed {@link SemanticObject}
+     * @param stmts     the changed statements
+     * @param actions   the action of each statement
+     * @param remote    whether the changed TripleStore is not local
+     */
+    public void notifyTSChanges(SemanticObject obj, List<Statement> stmts, List<String> actions, boolean remote) {
+        if (obj != null && obj.getURI() != null) {
+            if (actions.contains(SemanticObject.ACT_ADD) && obj.getModel() != null) {
+                routingIndex.add(obj.getURI(), obj.getModel());
+            }
+            if (!remote) {
+                for (int i = 0; i < stmts.size(); i++) {
+                    sendChange(obj, stmts.get(i), actions.get(i));
+                }
+            }
+            List<Statement> ustmts = Collections.unmodifiableList(stmts);
+            List<String> uactions = Collections.unmodifiableList(actions);
+            for(SemanticTSObserver observer : tsObservers) {
+                try {
+                    observer.notifyBatch(obj, ustmts, uactions, remote);
+                } catch (Exception e) {
+                    log.error(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a local change to the other nodes of the cluster as a binary message when swb/messageBinaryChanges
+     * is enabled, they apply it with {@link #submitExternalChange(SemanticExternalChange)}.
+     */
+    private void sendChange(SemanticObject obj, Statement stmt, String action) {
+        if (!binaryChanges) {
+            return;
+        }
+        SWBMessageCenter center = SWBPlatform.getMessageCenter();
+        if (center != null) {
+            center.sendChange(new SemanticExternalChange(obj.getURI(),
+                    stmt != null ? stmt.getPredicate().getURI() : null,
+                    stmt != null ? stmt.getObject().asNode() : null, action));
+        }
+    }
+
     /**
      * Triggers an action on SemanticObject's RDF statements to add or delete a {@link Node} as a property.
      *
@@ -1029,37 +1296,145 @@ public class SemanticMgr implements SWBInstanceObject {
      * @param action    the action (one of {@link SemanticObject#ACT_ADD} or SemanticObject#ACT_REMOVE).
      */
     public void processExternalChange(String objURI, String propURI, Node node, String action) {
-        //Get related Semantic Object
+        SemanticObject obj = getExternalObject(objURI);
+        if (obj != null) {
+            Statement stmt = applyExternalChange(obj, propURI, node, action);
+            SWBPlatform.getSemanticMgr().notifyTSChange(obj, stmt, action, true);
+        }
+    }
+
+    /**
+     * Queues a remote change, changes received within the batch window (swb/externalChangeWindow) are
+     * applied together with {@link #processExternalChanges(Collection)}.
+     *
+     * @param change the change
+     */
+    public void submitExternalChange(SemanticExternalChange change) {
+        long window = externalChangeWindow;
+        if (window <= 0) {
+            processExternalChanges(Collections.singletonList(change));
+            return;
+        }
+        boolean first;
+        synchronized (externalLock) {
+            first = externalChanges.isEmpty();
+            externalChanges.add(change);
+        }
+        if (first) {
+            externalExecutor.schedule(this::flushExternalChanges, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushExternalChanges() {
+        List<SemanticExternalChange> batch;
+        synchronized (externalLock) {
+            batch = externalChanges;
+            externalChanges = new ArrayList<>();
+        }
+        //Releases the connections leased by the batch
+        try (SQLCache_SWB.ThreadScope scope = SQLCache_SWB.openThreadScope()) {
+            processExternalChanges(batch);
+        }
+    }
+
+    /**
+     * Applies a batch of remote changes. Changes are grouped by object, each object is loaded once, its changes are
+     * applied in order and the {@link SemanticTSObserver}s are notified once per object. A change that fails is
+     * logged and skipped, the other changes of its object are applied and notified.
+     *
+     * @param changes the changes
+     */
+    public void processExternalChanges(Collection<SemanticExternalChange> changes) {
+        Map<String, List<SemanticExternalChange>> bySubject = new LinkedHashMap<>();
+        for (SemanticExternalChange change : changes) {
+            if (change.getObjURI() != null) {
+                bySubject.computeIfAbsent(change.getObjURI(), k -> new ArrayList<>()).add(change);
+            }
+        }
+        for (Entry<String, List<SemanticExternalChange>> entry : bySubject.entrySet()) {
+            try {
+                processExternalChanges(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                log.error("Error processing external changes of " + entry.getKey(), e);
+            }
+        }
+    }
+
+    private void processExternalChanges(String objURI, List<SemanticExternalChange> changes) {
+        SemanticObject obj = null;
+        List<Statement> stmts = new ArrayList<>(changes.size());
+        List<String> actions = new ArrayList<>(changes.size());
+        for (SemanticExternalChange change : changes) {
+            if (obj == null) {
+                obj = getExternalObject(objURI);
+                if (obj == null) {
+                    return;
+                }
+            }
+            Statement stmt;
+            try {
+                stmt = applyExternalChange(obj, change.getPropURI(), change.getNode(), change.getAction());
+            } catch (Exception e) {
+                //A failed change does not prevent notifying the ones already applied
+                log.error("Error processing external change of " + objURI + " " + change.getAction() + " "
+                        + change.getPropURI(), e);
+                continue;
+            }
+            stmts.add(stmt);
+            actions.add(change.getAction());
+            if (stmt == null && SemanticObject.ACT_REMOVE.equals(change.getAction())) {
+                //The object was removed, following changes load it again
+                notifyTSChanges(obj, stmts, actions, true);
+                obj = null;
+                stmts = new ArrayList<>();
+                actions = new ArrayList<>();
+            }
+        }
+        if (obj != null && !stmts.isEmpty()) {
+            notifyTSChanges(obj, stmts, actions, true);
+        }
+    }
+
+    /**
+     * Gets the object of a remote change, loading it if it is not in cache.
+     */
+    private SemanticObject getExternalObject(String objURI) {
         SemanticObject obj = SemanticObject.getSemanticObjectFromCache(objURI);
         if (obj == null) {
             SemanticObject.clearNotFoundURI(objURI);
             obj = SemanticObject.createSemanticObject(objURI);
         }
+        return obj;
+    }
 
-        if (obj != null) {
-            Model model = obj.getModel().getRDFModel();
-            SemanticProperty prop = null;
-            Statement stmt = null;
+    /**
+     * Applies a remote change to an object.
+     *
+     * @return the changed statement or null if the whole object was removed.
+     */
+    private Statement applyExternalChange(SemanticObject obj, String propURI, Node node, String action) {
+        Model model = obj.getModel().getRDFModel();
+        SemanticProperty prop = null;
+        Statement stmt = null;
+
+        //Get related SemanticProperty
+        if (propURI != null) {
+            prop = SWBPlatform.getSemanticMgr().getVocabulary().getSemanticProperty(propURI);
+        }
 
-            //Get related SemanticProperty
+        //TODO: Check NPEs and consistency of additions and deletions
+        if (action.equals(SemanticObject.ACT_ADD)) {
+            stmt = model.createStatement(obj.getRDFResource(), prop.getRDFProperty(), model.asRDFNode(node));
+            obj.addStatement(stmt, true);
+        } else if (action.equals(SemanticObject.ACT_REMOVE)) {
             if (propURI != null) {
-                prop = SWBPlatform.getSemanticMgr().getVocabulary().getSemanticProperty(propURI);
-            }
-
-            //TODO: Check NPEs and consistency of additions and deletions
-            if (action.equals(SemanticObject.ACT_ADD)) {
                 stmt = model.createStatement(obj.getRDFResource(), prop.getRDFProperty(), model.asRDFNode(node));
-                obj.addStatement(stmt, true);
-            } else if (action.equals(SemanticObject.ACT_REMOVE)) {
-                if (propURI != null) {
-                    stmt = model.createStatement(obj.getRDFResource(), prop.getRDFProperty(), model.asRDFNode(node));
-                    obj.remove(stmt, true);
-                } else {
-                    obj.remove(true);
-                }
+                obj.remove(stmt, true);
+            } else {
+                obj.remove(true);
             }
-            SWBPlatform.getSemanticMgr().notifyTSChange(obj, stmt, action, true);
         }
+        return stmt;
     }
 
     /**
@@ -1074,6 +1449,7 @@ public class SemanticMgr implements SWBInstanceObject {
      * Closes all named models.
      */
     public void close() {
+        eventBus.close();
         store.close();
         store = null;
     }
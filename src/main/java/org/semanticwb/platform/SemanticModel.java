@@ -31,8 +31,10 @@ import com.hp.hpl.jena.query.*;
 import com.hp.hpl.jena.rdf.model.*;
 import com.hp.hpl.jena.rdf.model.impl.IteratorFactory;
 import com.hp.hpl.jena.rdf.model.impl.ModelCom;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
 import com.hp.hpl.jena.vocabulary.OWL;
 import com.hp.hpl.jena.vocabulary.RDF;
+import org.semanticwb.Logger;
 import org.semanticwb.SWBPlatform;
 import org.semanticwb.SWBUtils;
 import org.semanticwb.model.GenericObject;
@@ -41,14 +43,22 @@ import org.semanticwb.rdf.RemoteGraph;
 
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * High level wrapper for an Ontology Model that manages SemanticObjects.
  * @author Jei
  */
 public class SemanticModel {
+    private static Logger log = SWBUtils.getLogger(SemanticModel.class);
+
     /**
      * Enumeration of SemanticProperty types.
      */
@@ -100,6 +110,66 @@ public class SemanticModel {
      */
     private List modelClasses = null;
 
+    /**
+     * Reverse index of the statements of the model by object.
+     */
+    private final InverseIndex inverseIndex = new InverseIndex(this);
+
+    /**
+     * Blocks of counter values reserved by this node, by counter name.
+     */
+    private final ConcurrentHashMap<String, CounterBlock> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Range of counter values reserved in the triple store, values are handed out from <code>next</code>
+     * until <code>limit</code> is reached.
+     */
+    private static final class CounterBlock {
+        final AtomicLong next;
+        final long limit;
+
+        CounterBlock(long first, long limit) {
+            this.next = new AtomicLong(first);
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Filter of the subject URIs of the model, null if not built.
+     */
+    private volatile SubjectBloomFilter subjectFilter = null;
+
+    /**
+     * Listener that keeps the subject filter up to date.
+     */
+    private StatementListener subjectListener = null;
+
+    /**
+     * Listener of the subject filter being built, it becomes the subject listener when the filter is set.
+     */
+    private StatementListener pendingListener = null;
+
+    /**
+     * Whether a saturated subject filter is being rebuilt.
+     */
+    private final AtomicBoolean rebuildingFilter = new AtomicBoolean();
+
+    /**
+     * Whether the subject filter was reset while being rebuilt.
+     */
+    private volatile boolean filterReset = false;
+
+    /**
+     * Time the subject filter was set and how long its negative answers are trusted, 0 for ever.
+     */
+    private volatile long filterTime = 0;
+    private volatile long filterMaxAge = 0;
+
+    /**
+     * Number of statements read by the last full load of the model, -1 if never loaded.
+     */
+    private volatile long loadedStatements = -1;
+
     /**
      * Instantiates a new {@link SemanticModel}.
      *
@@ -118,6 +188,209 @@ public class SemanticModel {
     private void init() {
     }
 
+    /**
+     * Gets the reverse index of the statements of the model, by object URI and predicate.
+     * @return the reverse index.
+     */
+    InverseIndex getInverseIndex() {
+        return inverseIndex;
+    }
+
+    /**
+     * Gets the number of statements read by the last full load of the model.
+     * @return number of statements or -1 if the model was never loaded.
+     */
+    long getLoadedStatements() {
+        return loadedStatements;
+    }
+
+    /**
+     * Sets the number of statements read by a full load of the model.
+     * @param count number of statements
+     */
+    void setLoadedStatements(long count) {
+        loadedStatements = count;
+    }
+
+    /**
+     * Checks if a URI may be a subject of the model. Without a subject filter every URI may be a subject.
+     * <p>
+     * The filter only sees the statements added through this node, so its negative answers are trusted
+     * for <code>swb/semanticObjectSubjectFilterMaxAge</code> milliseconds. An older filter is rebuilt in
+     * background and meanwhile every URI may be a subject, leaving the misses to the not found cache.
+     *
+     * @param uri the URI
+     * @return false if the URI is not a subject of the model.
+     */
+    boolean mayContainSubject(String uri) {
+        SubjectBloomFilter filter = subjectFilter;
+        if (filter == null || filter.mightContain(uri)) {
+            return true;
+        }
+        long maxAge = filterMaxAge;
+        if (maxAge > 0 && System.currentTimeMillis() - filterTime > maxAge) {
+            rebuildSubjectFilter(filter.size() + filter.size() / 4);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registers a URI as a possible subject of the model.
+     *
+     * @param uri the URI
+     */
+    void addSubject(String uri) {
+        SubjectBloomFilter filter = subjectFilter;
+        if (filter != null) {
+            filter.put(uri);
+        }
+        SWBPlatform.getSemanticMgr().getRoutingIndex().add(uri, this);
+    }
+
+    /**
+     * Registers a subject URI in a filter being built and in the routing index of the {@link SemanticMgr}.
+     *
+     * @param filter the filter
+     * @param uri    the URI
+     */
+    void registerSubject(SubjectBloomFilter filter, String uri) {
+        filter.put(uri);
+        SWBPlatform.getSemanticMgr().getRoutingIndex().add(uri, this);
+        if (filter == subjectFilter && filter.isSaturated()) {
+            rebuildSubjectFilter(filter.size() * 2);
+        }
+    }
+
+    /**
+     * Rebuilds a saturated subject filter with a larger size in a background thread, the current filter
+     * is used until the new one is filled.
+     */
+    private void rebuildSubjectFilter(final long expected) {
+        if (rebuildingFilter.compareAndSet(false, true)) {
+            Thread t = new Thread(() -> {
+                try {
+                    do {
+                        filterReset = false;
+                        log.event("Rebuilding subject filter of " + modelName + " for " + expected + " subjects");
+                        buildSubjectFilter(expected);
+                    } while (filterReset);
+                } catch (Exception e) {
+                    log.error("Error rebuilding subject filter of " + modelName, e);
+                } finally {
+                    rebuildingFilter.set(false);
+                }
+            }, "SubjectFilter:" + modelName);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Builds the filter of subject URIs by scanning the subjects of the model.
+     */
+    void buildSubjectFilter() {
+        buildSubjectFilter(-1);
+    }
+
+    /**
+     * Builds the filter of subject URIs by scanning the subjects of the model.
+     *
+     * @param expected expected number of subjects, -1 to use the size of the model.
+     */
+    private void buildSubjectFilter(long expected) {
+        SubjectBloomFilter filter = createSubjectFilter(expected);
+        ResIterator it = model.listSubjects();
+        try {
+            while (it.hasNext()) {
+                registerSubject(filter, it.nextResource().getURI());
+            }
+        } finally {
+            it.close();
+        }
+        setSubjectFilter(filter);
+    }
+
+    /**
+     * Creates an empty subject filter that receives every statement added to the model from now on,
+     * the filter is used once it is filled and set with {@link #setSubjectFilter(SubjectBloomFilter)}.
+     * The current filter keeps receiving statements until then.
+     *
+     * @param expected expected number of subjects, -1 to use the size of the model.
+     * @return the filter
+     */
+    synchronized SubjectBloomFilter createSubjectFilter(long expected) {
+        if (expected < 0) {
+            try {
+                expected = model.size();
+            } catch (Exception e) {
+                expected = 0;
+            }
+        }
+        final SubjectBloomFilter filter = new SubjectBloomFilter(Math.max(1024, expected), 0.01);
+        if (pendingListener != null) {
+            model.unregister(pendingListener);
+        }
+        pendingListener = new StatementListener() {
+            @Override
+            public void addedStatement(Statement s) {
+                registerSubject(filter, s.getSubject().getURI());
+            }
+        };
+        model.register(pendingListener);
+        return filter;
+    }
+
+    /**
+     * Sets the filter of subject URIs created by the last {@link #createSubjectFilter(long)}, all subjects of the
+     * model are registered from now on. A filter filled beyond its size is rebuilt in background.
+     *
+     * @param filter the filter
+     */
+    synchronized void setSubjectFilter(SubjectBloomFilter filter) {
+        if (subjectListener != null) {
+            model.unregister(subjectListener);
+        }
+        subjectListener = pendingListener;
+        pendingListener = null;
+        subjectFilter = filter;
+        filterTime = System.currentTimeMillis();
+        filterMaxAge = Long.parseLong(SWBPlatform.getEnv("swb/semanticObjectSubjectFilterMaxAge", "3600000"));
+        SWBPlatform.getSemanticMgr().getRoutingIndex().track(this);
+        if (filter.isSaturated()) {
+            rebuildSubjectFilter(filter.size() * 2);
+        }
+    }
+
+    /**
+     * Drops the subject filter because the subjects of the store may have changed without this node seeing
+     * the statements. Every URI may be a subject until the filter is rebuilt in background.
+     */
+    synchronized void resetSubjectFilter() {
+        SubjectBloomFilter filter = subjectFilter;
+        if (filter == null) {
+            return;
+        }
+        if (subjectListener != null) {
+            model.unregister(subjectListener);
+            subjectListener = null;
+        }
+        subjectFilter = null;
+        SWBPlatform.getSemanticMgr().getRoutingIndex().untrack(this);
+        filterReset = true;
+        rebuildSubjectFilter(filter.size());
+    }
+
+    /**
+     * Drops a subject filter created by {@link #createSubjectFilter(long)} that could not be filled.
+     */
+    synchronized void discardSubjectFilter() {
+        if (pendingListener != null) {
+            model.unregister(pendingListener);
+            pendingListener = null;
+        }
+    }
+
 
     /**
      * Checks if {@link SemanticModel} will LOG user changes.
@@ -319,7 +592,7 @@ public class SemanticModel {
                         null,
                         property.getRDFProperty(),
                         obj.getRDFResource()),
-                true);
+                true, true);
 
         //Filter by class
         while (it.hasNext()) {
@@ -402,6 +675,25 @@ public class SemanticModel {
         return SemanticObject.createSemanticObject(uri);
     }
 
+    /**
+     * Gets the semantic objects of a list of URIs. Objects not in cache are loaded in batches per model.
+     * @param uris the URIs
+     * @return map of URI to {@link SemanticObject} in the order of the list, URIs not found are not included.
+     */
+    public Map<String, SemanticObject> getSemanticObjects(Collection<String> uris) {
+        return SemanticObject.createSemanticObjects(uris);
+    }
+
+    /**
+     * Asynchronously gets the semantic objects of a list of URIs.
+     * @param uris the URIs
+     * @return future map of URI to {@link SemanticObject} in the order of the list.
+     * @see #getSemanticObjects(Collection)
+     */
+    public CompletableFuture<Map<String, SemanticObject>> getSemanticObjectsAsync(Collection<String> uris) {
+        return SemanticObject.createSemanticObjectsAsync(uris);
+    }
+
     /**
      * Creates a {@link SemanticObject} of type <code>cls</code> using an ID.
      * @param id  the id
@@ -604,10 +896,10 @@ public class SemanticModel {
         //TODO: Check this if-else because SemanticIterator ignores last parameter
         if (cls.isSWBClass()) {
             //Crea instancias de este tiplo de clase en el modelo sin verificar clase
-            ret = new SemanticIterator(stit, true, this, cls);
+            ret = new SemanticIterator(stit, true, checkSubClasses, this, cls);
         } else {
             //Crea instancias de este tiplo de clase en el modelo verificando clase
-            ret = new SemanticIterator(stit, true, this, null);
+            ret = new SemanticIterator(stit, true, checkSubClasses, this, null);
         }
 
         //Add instances of subclases if needed
@@ -884,10 +1176,37 @@ public class SemanticModel {
 
     /**
      * Gets value of resource associated to class counters, used to create class IDs.
+     * If this node holds a reserved block, the last value handed out is returned.
      * @param name the name used as identifier of counted class.
      * @return the counter value
      */
-    public synchronized long getCounterValue(String name) {
+    public long getCounterValue(String name) {
+        CounterBlock block = counters.get(name);
+        if (block != null) {
+            return Math.min(block.next.get(), block.limit + 1) - 1;
+        }
+        return readCounterValue(name);
+    }
+
+    /**
+     * Sets value of resource associated to class counters, used to create class IDs.
+     * The block reserved by this node is discarded.
+     * @param name the name used as identifier of counted class.
+     * @param val the counter value
+     */
+    public void setCounterValue(String name, long val) {
+        synchronized (counters) {
+            counters.remove(name);
+            writeCounterValue(name, val);
+        }
+    }
+
+    /**
+     * Reads the persisted value of a counter, the highest value reserved by any node.
+     * @param name the counter name
+     * @return the counter value
+     */
+    private long readCounterValue(String name) {
         long ret = 0;
         String uri = getNameSpace() + "counter";
         Resource res = getRDFModel().createResource(uri + ":" + name);
@@ -902,11 +1221,11 @@ public class SemanticModel {
     }
 
     /**
-     * Sets value of resource associated to class counters, used to create class IDs.
-     * @param name the name used as identifier of counted class.
+     * Persists the value of a counter.
+     * @param name the counter name
      * @param val the counter value
      */
-    public synchronized void setCounterValue(String name, long val) {
+    private void writeCounterValue(String name, long val) {
         String uri = getNameSpace() + "counter";
         Resource res = getRDFModel().createResource(uri + ":" + name);
         Property prop = getRDFModel().createProperty(uri);
@@ -921,6 +1240,42 @@ public class SemanticModel {
         it.close();
     }
 
+    /**
+     * Reserves the next block of values of a counter, unless another thread already replaced the exhausted block.
+     * Only the end of the block is persisted, values of a block not used before a restart are skipped.
+     * @param name the counter name
+     * @param exhausted the exhausted block or null
+     */
+    private void reserveCounterBlock(String name, CounterBlock exhausted) {
+        synchronized (counters) {
+            if (counters.get(name) != exhausted) {
+                return;
+            }
+            long size = getCounterBlockSize();
+            long first = readCounterValue(name) + 1;
+            if (exhausted != null && exhausted.limit >= first) {
+                first = exhausted.limit + 1;
+            }
+            long limit = first + size - 1;
+            writeCounterValue(name, limit);
+            counters.put(name, new CounterBlock(first, limit));
+        }
+    }
+
+    private static long getCounterBlockSize() {
+        return Math.max(1, Long.parseLong(SWBPlatform.getEnv("swb/counterBlockSize", "1000")));
+    }
+
+    /**
+     * Checks if counter values are handed out from reserved blocks. A block is reserved reading and writing
+     * the persisted value, the store has no conditional update to make it atomic across nodes, so blocks
+     * are only used by a standalone node (swb/clientServer=SASC).
+     * @return true if blocks are used
+     */
+    private static boolean isCounterBlockEnabled() {
+        return "SASC".equalsIgnoreCase(SWBPlatform.getEnv("swb/clientServer", "SASC")) && getCounterBlockSize() > 1;
+    }
+
     /**
      * @deprecated Use {@link #getAndIncrementCounter(SemanticClass)}
      * Gets value of resource associated to class counters, used to create class IDs
@@ -930,7 +1285,7 @@ public class SemanticModel {
      * @return the counter
      */
     @Deprecated
-    public synchronized long getCounter(SemanticClass cls) {
+    public long getCounter(SemanticClass cls) {
         return getAndIncrementCounter(cls);
     }
 
@@ -942,59 +1297,74 @@ public class SemanticModel {
      * @return the counter
      */
     @Deprecated
-    public synchronized long getCounter(String name) {
+    public long getCounter(String name) {
         return getAndIncrementCounter(name);
     }
 
     /**
      * Gets value of resource associated to class counters, used to create class IDs
-     * and increments that value.
+     * and increments that value. On a standalone node values are handed out without locking from a block
+     * reserved in the triple store, the size of the block is set by <code>swb/counterBlockSize</code>.
+     * In a cluster each value is read and incremented in the triple store.
      *
      * @param name the class name
      * @return the counter
      */
-    public synchronized long getAndIncrementCounter(String name) {
-        long ret = getCounterValue(name);
-        ret++;
-        setCounterValue(name, ret);
-        return ret;
+    public long getAndIncrementCounter(String name) {
+        if (!isCounterBlockEnabled()) {
+            synchronized (counters) {
+                counters.remove(name);
+                long ret = readCounterValue(name) + 1;
+                writeCounterValue(name, ret);
+                return ret;
+            }
+        }
+        while (true) {
+            CounterBlock block = counters.get(name);
+            if (block != null) {
+                long id = block.next.getAndIncrement();
+                if (id <= block.limit) {
+                    return id;
+                }
+            }
+            reserveCounterBlock(name, block);
+        }
     }
 
     /**
      * Gets value of resource associated to class counters, used to create class IDs
-     * and increments that value.
+     * and increments that value. If an object already exists with the new ID, the counter
+     * is moved past the highest ID of the class.
      *
      * @param cls the {@link SemanticClass}
      * @return the counter
      */
-    public synchronized long getAndIncrementCounter(SemanticClass cls) {
-        String uri;
-        long id = getAndIncrementCounter(cls.getClassGroupId());
-        long tid = id - 1;
-
-        tid++;
-        uri = getObjectUri("" + tid, cls);
-
-        if (SemanticObject.createSemanticObject(uri, this) != null) {
-            Iterator<Statement> it = this.getRDFModel().listStatements(null, RDF.type, cls.getOntClass());
-            while (it.hasNext()) {
-                Statement statement = it.next();
-                try {
-                    id = Long.parseLong(getResourceId(statement.getSubject()));
-                } catch (Exception ne) {
+    public long getAndIncrementCounter(SemanticClass cls) {
+        String name = cls.getClassGroupId();
+        long id = getAndIncrementCounter(name);
+
+        if (SemanticObject.createSemanticObject(getObjectUri("" + id, cls), this) != null) {
+            synchronized (counters) {
+                long tid = id;
+                Iterator<Statement> it = this.getRDFModel().listStatements(null, RDF.type, cls.getOntClass());
+                while (it.hasNext()) {
+                    Statement statement = it.next();
+                    try {
+                        long aux = Long.parseLong(getResourceId(statement.getSubject()));
+                        if (aux > tid) {
+                            tid = aux;
+                        }
+                    } catch (Exception ne) {
+                    }
                 }
-
-                if (id > tid) {
-                    tid = id;
+                if (tid > getCounterValue(name)) {
+                    //The persisted value never goes back, it may hold blocks reserved by other nodes
+                    setCounterValue(name, Math.max(tid, readCounterValue(name)));
                 }
+                id = getAndIncrementCounter(name);
             }
-            tid++;
-        }
-
-        if (id != tid) {
-            setCounterValue(cls.getClassGroupId(), tid);
         }
-        return tid;
+        return id;
     }
 
     /**
@@ -1020,11 +1390,14 @@ public class SemanticModel {
      * Deletes the resource associated to counter class.
      * @param name the name of the class
      */
-    public synchronized void deleteCounterValue(String name) {
+    public void deleteCounterValue(String name) {
         String uri = getNameSpace() + "counter";
         Resource res = getRDFModel().createResource(uri + ":" + name);
         Property prop = getRDFModel().createProperty(uri);
-        getRDFModel().remove(res, prop, null);
+        synchronized (counters) {
+            counters.remove(name);
+            getRDFModel().remove(res, prop, null);
+        }
     }
 
     /**
@@ -22,6 +22,9 @@
  */
 package org.semanticwb.platform;
 
+import com.hp.hpl.jena.db.impl.SQLCache_SWB;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Literal;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.Property;
@@ -29,28 +32,35 @@ import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 import com.hp.hpl.jena.vocabulary.RDF;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Method;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import org.semanticwb.base.util.HashMapCache;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.semanticwb.Logger;
 import org.semanticwb.SWBException;
 import org.semanticwb.SWBPlatform;
 import org.semanticwb.SWBUtils;
 import org.semanticwb.base.util.URLEncoder;
 import org.semanticwb.model.GenericObject;
+import org.semanticwb.rdf.SubjectBatchGraph;
 import org.w3c.dom.Document;
 
 /**
@@ -78,37 +88,19 @@ public class SemanticObject
     public static final String ACT_CLONE="CLONE";
 
     /** The m_objs. */
-    private static Map<String, SemanticObject>m_objs=new ConcurrentHashMap<String, SemanticObject>();
+    private static SemanticObjectCache m_objs=new SemanticObjectCache();
 
-    /** The m_uris. */
-    private static ConcurrentHashMap<String, String>m_uris=new ConcurrentHashMap<String, String>();
+    /** Cargas en curso por URI, la entrada se elimina al terminar la carga. */
+    private static ConcurrentHashMap<String, Load>m_loads=new ConcurrentHashMap<String, Load>();
 
     /** The m_no_objs. */
-    private static Map<String, Object>m_no_objs=new HashMapCache<String, Object>(1000);
+    private static NotFoundCache m_no_objs=new NotFoundCache(10000, 60000);
 
     /** The has cache. */
     private static boolean hasCache=true;
 
-    //No cambian
-    /** The ext get methods. */
-    private static HashMap<String, Method> extGetMethods=new HashMap();
-
-    /** The ext set methods. */
-    private static HashMap<String, Method> extSetMethods=new HashMap();
-
-    /** The wrapper to primitive. */
-    private static HashMap<Class,Class> wrapperToPrimitive = new HashMap();
-
-    static {
-        wrapperToPrimitive.put( Boolean.class, Boolean.TYPE );
-        wrapperToPrimitive.put( Byte.class, Byte.TYPE );
-        wrapperToPrimitive.put( Short.class, Short.TYPE );
-        wrapperToPrimitive.put( Character.class, Character.TYPE );
-        wrapperToPrimitive.put( Integer.class, Integer.TYPE );
-        wrapperToPrimitive.put( Long.class, Long.TYPE );
-        wrapperToPrimitive.put( Float.class, Float.TYPE );
-        wrapperToPrimitive.put( Double.class, Double.TYPE );
-    }
+    /** Numero de elementos que los iteradores leen por adelantado. */
+    private static volatile int prefetchWindow=32;
 
     /** The m_genobj. */
     private GenericObject m_genobj=null;
@@ -126,8 +118,7 @@ public class SemanticObject
     private boolean m_virtual = false;
 
     //private List<Statement> m_props=Collections.synchronizedList(new ArrayList());
-    private List<Statement> m_props=new CopyOnWriteArrayList<Statement>();
-    private List<Statement> m_propsInv=null;
+    private StatementIndex m_props=new StatementIndex();
 
     private HashMap<String,Object> m_propertyMap=null;                                  //Cache de propiedades en HashMap, para JS
 
@@ -172,7 +163,11 @@ public class SemanticObject
         m_res=res;
         m_cls=scls;
         m_props.add(smodel.getRDFModel().createStatement(res, RDF.type, scls.getOntClass()));
-        if(res!=null)m_no_objs.remove(res.getURI());
+        if(res!=null)
+        {
+            m_no_objs.remove(res.getURI());
+            smodel.addSubject(res.getURI());
+        }
     }
 
     /**
@@ -193,7 +188,7 @@ public class SemanticObject
         while (stit.hasNext())
         {
             Statement st = stit.next();
-            m_props.add(0,st);
+            m_props.addFirst(st);
 
             if(st.getPredicate().equals(RDF.type))
             {
@@ -209,19 +204,6 @@ public class SemanticObject
         m_propertyMap=null;
     }
 
-    private void initInverse(StmtIterator stit)
-    {
-        //System.out.println("initInverse");
-        //new Exception().printStackTrace();
-        while (stit.hasNext())
-        {
-            Statement st = stit.next();
-            //System.out.println("-->"+st);
-            m_propsInv.add(st);
-        }
-        stit.close();
-    }
-
     public void reloadProps()
     {
         if(m_res!=null)
@@ -235,39 +217,49 @@ public class SemanticObject
 
     public void reloadInvProps()
     {
-        if(m_propsInv==null)m_propsInv=Collections.synchronizedList(new ArrayList());
-        else m_propsInv.clear();
-        if(m_res!=null)
+        if(m_res!=null && m_model!=null)
         {
-            initInverse(m_model.getRDFModel().listStatements(null, null, m_res));
-            //TODO: Revisar inversas de otros modelos
+            m_model.getInverseIndex().reload(m_res);
         }
     }
 
     public void clearInvProps()
     {
-        m_propsInv=null;
+        if(m_res!=null && m_model!=null)
+        {
+            m_model.getInverseIndex().invalidate(m_res.getURI());
+        }
     }
 
 
-    private List<Statement> getProps()
+    private StatementIndex getProps()
     {
         return m_props;
     }
 
-    private List<Statement> getPropsInv()
+    /**
+     * Estimacion del tamaño en memoria del objeto, usada para limitar el cache
+     */
+    int estimateSize()
     {
-        if(m_propsInv==null)
+        int size=160;
+        Iterator<Statement> it=m_props.iterator();
+        while (it.hasNext())
         {
-            synchronized(this)
-            {
-                if(m_propsInv==null)
-                {
-                    reloadInvProps();
-                }
-            }
+            RDFNode obj=it.next().getObject();
+            size+=96;
+            if(obj.isLiteral())size+=2*((Literal)obj).getLexicalForm().length();
         }
-        return m_propsInv;
+        return size;
+    }
+
+    /**
+     * Regresa los statements que apuntan a este objeto, del indice inverso del modelo
+     */
+    private StatementIndex getPropsInv()
+    {
+        if(m_res==null || m_model==null)return new StatementIndex();
+        return m_model.getInverseIndex().get(m_res);
     }
 
     private void addStatementToPropertyMap(Statement statement, Map map)
@@ -363,94 +355,92 @@ public class SemanticObject
 
     /*********************************************** statics ****************************************************************/
 
+    /**
+     * Elimina el URI del cache de objetos no encontrados, el URI puede existir en cualquier modelo.
+     * Si el filtro de sujetos de un modelo lo descarta se consulta el modelo y el URI se registra
+     * solo en el modelo que lo contiene.
+     *
+     * @param uri the uri
+     */
     public static void clearNotFoundURI(String uri)
     {
         m_no_objs.remove(uri);
+        Iterator<Map.Entry<String, SemanticModel>> it=SWBPlatform.getSemanticMgr().getModels().iterator();
+        while(it.hasNext())
+        {
+            SemanticModel model=it.next().getValue();
+            if(model.mayContainSubject(uri))continue;
+            Model rdf=model.getRDFModel();
+            if(rdf.contains(rdf.getResource(uri), (Property)null))
+            {
+                model.addSubject(uri);
+                break;
+            }
+        }
     }
 
     /**
-     * Carga todos los datos de la DB
+     * Configura el cache de objetos no encontrados
+     *
+     * @param maxSize numero maximo de URIs
+     * @param ttl tiempo de vida de cada URI en milisegundos
      */
-    public static void loadFullCache(SemanticModel model)
+    public static void configureNotFoundCache(int maxSize, long ttl)
     {
-        HashMap<String, SemanticObject> map=new HashMap();
-        StmtIterator it=model.getRDFModel().listStatements();
-        while (it.hasNext())
-        {
-            Statement st = it.next();
-            Resource subj=st.getSubject();
-            Property prop=st.getPredicate();
-            RDFNode obj=st.getObject();
-
-            //if(model.getName().equals("uradm"))
-            //System.out.println(subj+" "+prop+" "+obj);
-
-            String uri=subj.getURI();
-            if(uri!=null)
-            {
-                SemanticObject sobj=map.get(uri);
-                if(sobj==null)
-                {
-                    sobj=new SemanticObject();
-                    sobj.m_res=subj;
-                    sobj.m_virtual=false;
-                    sobj.m_model=model;
-                    map.put(uri, sobj);
-                }
-                sobj.m_props.add(0,st);
-
-
-                if(prop.equals(RDF.type))
-                {
-                    //if(model.getName().equals("uradm"))
-                    //if(sobj.getURI().endsWith(":45"))
-                    //System.out.println("obj:"+sobj+" "+sobj.m_cls+" "+prop);
-                    if(sobj.m_cls==null || !sobj.m_cls.isSWBClass())
-                    {
-                        sobj.m_cls = SWBPlatform.getSemanticMgr().getVocabulary().getSemanticClass(obj.asResource().getURI());
-                        //if(model.getName().equals("uradm"))
-                        //if(sobj.getURI().endsWith(":45"))
-                        //System.out.println("cls:"+sobj.m_cls+" "+subj);
-                    }
-                }
-            }
-            //Inversa
-            if(obj.isResource())
-            {
-                uri=obj.asResource().getURI();
-                if(uri!=null)
-                {
-                    SemanticObject sobj=map.get(uri);
-                    if(sobj==null)
-                    {
-                        sobj=new SemanticObject();
-                        sobj.m_res=obj.asResource();
-                        sobj.m_virtual=false;
-                        sobj.m_model=model;
-                        map.put(uri, sobj);
-                    }
-                    if(sobj.m_propsInv==null)sobj.m_propsInv=Collections.synchronizedList(new ArrayList());
-                    sobj.m_propsInv.add(st);
-                }
-            }
-        }
+        m_no_objs.configure(maxSize, ttl);
+    }
 
-        //System.out.println("Cache:"+model.getName()+" "+map.size());
+    /**
+     * Regresa el numero de elementos que los iteradores leen por adelantado
+     *
+     * @return the prefetch window
+     */
+    public static int getPrefetchWindow()
+    {
+        return prefetchWindow;
+    }
 
-        Iterator<SemanticObject> it2=map.values().iterator();
-        while (it2.hasNext()) {
-            SemanticObject semanticObject = it2.next();
+    /**
+     * Define el numero de elementos que los iteradores leen por adelantado, 0 o 1 lo desactiva
+     *
+     * @param window the prefetch window
+     */
+    public static void setPrefetchWindow(int window)
+    {
+        prefetchWindow=window;
+    }
 
-            //if(model.getName().equals("uradm"))
-            //System.out.println("put:"+semanticObject);
+    /**
+     * Carga todos los datos de la DB
+     */
+    public static void loadFullCache(SemanticModel model)
+    {
+        m_objs.pinModel(model.getName());
+        int threads=Integer.parseInt(SWBPlatform.getEnv("swb/semanticObjectLoadThreads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        new SemanticObjectLoader(model, threads).load();
+    }
 
-            if(semanticObject.m_props.size()>0)
-            {
-                cacheSemanticObject(semanticObject);
-                if(semanticObject.m_propsInv==null)semanticObject.m_propsInv=Collections.synchronizedList(new ArrayList());
-                semanticObject.m_propertyMap=null;
-            }
-        }
+    /**
+     * Crea un SemanticObject con todos sus statements, usado por la carga completa del cache
+     *
+     * @param model the model
+     * @param res the resource
+     * @param stmts statements del recurso en el orden de la DB
+     * @param cls the semantic class
+     * @return the semantic object
+     */
+    static SemanticObject createCachedSemanticObject(SemanticModel model, Resource res, List<Statement> stmts, SemanticClass cls)
+    {
+        SemanticObject sobj=new SemanticObject();
+        sobj.m_res=res;
+        sobj.m_virtual=false;
+        sobj.m_model=model;
+        sobj.m_cls=cls;
+        //Se conserva el orden inverso de la carga por statement
+        ArrayList<Statement> list=new ArrayList(stmts);
+        Collections.reverse(list);
+        sobj.m_props.addAll(list);
+        return sobj;
     }
 
 
@@ -535,10 +525,20 @@ public class SemanticObject
         //TODO:Validar si puede agregarse a cache
         if(hasCache && obj!=null && obj.getURI()!=null)
         {
-            m_objs.put(obj.getURI(), obj);
+            m_objs.put(obj);
         }
     }
 
+    /**
+     * Regresa el cache de SemanticObjects
+     *
+     * @return the cache
+     */
+    public static SemanticObjectCache getCache()
+    {
+        return m_objs;
+    }
+
 
 
     /**
@@ -554,105 +554,350 @@ public class SemanticObject
         if(null==uri)return null;
         //if(null==uri || uri.length()>0)return null;
         SemanticObject ret=getSemanticObjectFromCache(uri);
-        if(ret==null && !m_no_objs.containsKey(uri))
+        if(ret==null && !m_no_objs.contains(uri))
         {
-            String i_uri=m_uris.putIfAbsent(uri, uri);
-            if(i_uri==null)i_uri=uri;
+            //Las peticiones concurrentes del mismo URI comparten una sola carga
+            Load load=new Load();
+            Load current=m_loads.putIfAbsent(uri, load);
+            if(current!=null)
+            {
+                //Carga reentrante desde el mismo hilo
+                if(current.owner==Thread.currentThread())return loadSemanticObject(uri, smodel);
+                try
+                {
+                    return current.join();
+                }catch(CompletionException e)
+                {
+                    if(e.getCause() instanceof RuntimeException)throw (RuntimeException)e.getCause();
+                    throw e;
+                }
+            }
 
-//            System.out.println("Sync:"+uri);
-//            synchronized(SemanticObject.class)
-            synchronized(i_uri)
+            try
             {
                 ret=getSemanticObjectFromCache(uri);
-                if(ret==null && !m_no_objs.containsKey(uri))
+                if(ret==null && !m_no_objs.contains(uri))
                 {
-//                    System.out.println("Loading:"+uri);
-//                    try
-//                    {
-//                        Thread.sleep(100);
-//                    }catch(Exception e){}
+                    ret=loadSemanticObject(uri, smodel);
+                }
+                load.complete(ret);
+            }catch(RuntimeException | Error e)
+            {
+                load.completeExceptionally(e);
+                throw e;
+            }finally
+            {
+                m_loads.remove(uri, load);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Regresa los SemanticObjects de una lista de URIs. Los objetos que no estan en cache se agrupan
+     * por modelo y se cargan con una sola consulta cuando el grafo lo permite.
+     * Los URIs que no existen no se incluyen en el resultado
+     *
+     * @param uris lista de URIs
+     * @return mapa de URI a SemanticObject en el orden de la lista
+     */
+    public static Map<String, SemanticObject> createSemanticObjects(Collection<String> uris)
+    {
+        LinkedHashMap<String, SemanticObject> ret=new LinkedHashMap<String, SemanticObject>();
+        HashMap<SemanticModel, List<String>> batches=new HashMap<SemanticModel, List<String>>();
+        LinkedHashMap<String, Load> loads=new LinkedHashMap<String, Load>();
+        ArrayList<String> unrouted=new ArrayList<String>();
+        ArrayList<String> others=new ArrayList<String>();
+
+        for(String uri : uris)
+        {
+            if(uri==null || ret.containsKey(uri))continue;
+            SemanticObject obj=getSemanticObjectFromCache(uri);
+            ret.put(uri, obj);
+            if(obj!=null || m_no_objs.contains(uri))continue;
+
+            Load load=new Load();
+            if(m_loads.putIfAbsent(uri, load)!=null)
+            {
+                //Otro hilo esta cargando el objeto
+                others.add(uri);
+                continue;
+            }
+            loads.put(uri, load);
+            obj=getSemanticObjectFromCache(uri);
+            if(obj!=null)
+            {
+                ret.put(uri, obj);
+                continue;
+            }
+
+            SemanticModel model=m_objs.getEvictedModel(uri);
+            if(model==null)
+            {
+                String ns=ModelRoutingIndex.prefix(uri);
+                if(ns!=null)model=SWBPlatform.getSemanticMgr().getModelByNS(ns);
+            }
+            if(model!=null)
+            {
+                List<String> batch=batches.get(model);
+                if(batch==null)
+                {
+                    batch=new ArrayList<String>();
+                    batches.put(model, batch);
+                }
+                batch.add(uri);
+            }else
+            {
+                unrouted.add(uri);
+            }
+        }
+
+        try
+        {
+            for(Map.Entry<SemanticModel, List<String>> ent : batches.entrySet())
+            {
+                loadSemanticObjects(ent.getKey(), ent.getValue(), ret);
+            }
+            for(String uri : unrouted)
+            {
+                ret.put(uri, loadSemanticObject(uri, null));
+            }
+        }catch(RuntimeException | Error e)
+        {
+            for(Load load : loads.values())load.completeExceptionally(e);
+            throw e;
+        }finally
+        {
+            for(Map.Entry<String, Load> ent : loads.entrySet())
+            {
+                ent.getValue().complete(ret.get(ent.getKey()));
+                m_loads.remove(ent.getKey(), ent.getValue());
+            }
+        }
+
+        for(String uri : others)
+        {
+            ret.put(uri, createSemanticObject(uri));
+        }
+
+        Iterator<SemanticObject> it=ret.values().iterator();
+        while(it.hasNext())
+        {
+            if(it.next()==null)it.remove();
+        }
+        return ret;
+    }
+
+    /**
+     * Carga de forma asincrona los SemanticObjects de una lista de URIs
+     *
+     * @param uris lista de URIs
+     * @return mapa de URI a SemanticObject en el orden de la lista
+     * @see #createSemanticObjects(java.util.Collection)
+     */
+    public static CompletableFuture<Map<String, SemanticObject>> createSemanticObjectsAsync(final Collection<String> uris)
+    {
+        return CompletableFuture.supplyAsync(() ->
+        {
+            //Libera las conexiones que tome la carga
+            try (SQLCache_SWB.ThreadScope scope = SQLCache_SWB.openThreadScope())
+            {
+                return createSemanticObjects(uris);
+            }
+        }, AsyncLoader.EXECUTOR);
+    }
+
+    /**
+     * Carga los SemanticObjects de una lista de URIs de un modelo y los agrega al cache
+     *
+     * @param model modelo de los objetos
+     * @param uris lista de URIs
+     * @param ret mapa donde se agregan los objetos, null si no existen
+     */
+    private static void loadSemanticObjects(SemanticModel model, List<String> uris, Map<String, SemanticObject> ret)
+    {
+        Model rmodel=model.getRDFModel();
+        HashMap<String, List<Statement>> stmts=new HashMap<String, List<Statement>>();
+        ArrayList<String> pending=new ArrayList<String>(uris.size());
+        for(String uri : uris)
+        {
+            if(model.mayContainSubject(uri))pending.add(uri);
+        }
+
+        if(pending.size()>1 && rmodel.getGraph() instanceof SubjectBatchGraph)
+        {
+            ArrayList<Node> nodes=new ArrayList<Node>(pending.size());
+            for(String uri : pending)nodes.add(Node.createURI(uri));
+            ExtendedIterator<Triple> it=((SubjectBatchGraph)rmodel.getGraph()).findBySubjects(nodes);
+            try
+            {
+                while(it.hasNext())
+                {
+                    Statement st=rmodel.asStatement(it.next());
+                    addStatement(stmts, st.getSubject().getURI(), st);
+                }
+            }finally
+            {
+                it.close();
+            }
+        }else
+        {
+            for(String uri : pending)
+            {
+                StmtIterator it=rmodel.getResource(uri).listProperties();
+                try
+                {
+                    while(it.hasNext())addStatement(stmts, uri, it.nextStatement());
+                }finally
+                {
+                    it.close();
+                }
+            }
+        }
+
+        for(String uri : uris)
+        {
+            SemanticObject obj=null;
+            List<Statement> list=stmts.get(uri);
+            if(list!=null)
+            {
+                obj=new SemanticObject(model, rmodel.getResource(uri), list.iterator());
+                //Se conserva el objeto si otro hilo lo agrego al cache
+                if(hasCache)obj=m_objs.putIfAbsent(obj);
+            }else
+            {
+                m_no_objs.put(uri);
+            }
+            ret.put(uri, obj);
+        }
+    }
+
+    private static void addStatement(Map<String, List<Statement>> stmts, String uri, Statement st)
+    {
+        List<Statement> list=stmts.get(uri);
+        if(list==null)
+        {
+            list=new ArrayList<Statement>();
+            stmts.put(uri, list);
+        }
+        list.add(st);
+    }
+
+    /**
+     * Pool de hilos de las cargas asincronas
+     */
+    private static final class AsyncLoader
+    {
+        private static final AtomicInteger count=new AtomicInteger();
+        private static final ExecutorService EXECUTOR=Executors.newFixedThreadPool(
+                Integer.parseInt(SWBPlatform.getEnv("swb/semanticObjectAsyncThreads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                r ->
+                {
+                    Thread t=new Thread(r, "SemanticObjectLoader-"+count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
 
-                    //System.out.println("createSemanticObject:"+uri);
-                    if(smodel!=null)
+    /**
+     * Carga el SemanticObject del URI de su modelo y lo agrega al cache,
+     * si no existe se registra en el cache de objetos no encontrados
+     *
+     * @param uri the uri
+     * @param smodel modelo del objeto o null para buscarlo
+     * @return the semantic object
+     */
+    private static SemanticObject loadSemanticObject(String uri, SemanticModel smodel)
+    {
+        SemanticObject ret=null;
+        //Los objetos expulsados del cache se recargan de su modelo original
+        if(smodel==null)smodel=m_objs.getEvictedModel(uri);
+        if(smodel!=null)
+        {
+            //El filtro de sujetos evita consultar URIs que no existen en el modelo
+            if(smodel.mayContainSubject(uri))
+            {
+                Resource res=smodel.getRDFModel().getResource(uri);
+                StmtIterator stit=res.listProperties();
+                if(stit.hasNext())
+                {
+                    ret=new SemanticObject(smodel,res,stit);
+                }
+            }
+        }else
+        {
+            String base=ModelRoutingIndex.prefix(uri);
+            if(base!=null)
+            {
+                log.trace("getResource in Model(1):"+uri+" "+base);
+                SemanticModel model=SWBPlatform.getSemanticMgr().getModelByNS(base);
+                //System.out.println("model1:"+model+" uri:"+uri+" base:"+base);
+                if(model!=null)
+                {
+                    if(!model.mayContainSubject(uri))
                     {
-                        Resource res=smodel.getRDFModel().getResource(uri);
-                        StmtIterator stit=res.listProperties();
-                        if(stit.hasNext())
-                        {
-                            ret=new SemanticObject(smodel,res,stit);
-                        }else
-                        {
-                            ret=null;
-                        }
+                        m_no_objs.put(uri);
+                        return null;
+                    }
+                    Resource res=model.getRDFModel().getResource(uri);
+                    StmtIterator stit=res.listProperties();
+                    //System.out.println("model2:"+model+" uri:"+uri+" ret:"+res+" stit:"+stit.hasNext());
+                    if(stit.hasNext())
+                    {
+                        ret=new SemanticObject(model,res,stit);
                     }else
                     {
-                        int i=uri.indexOf('#');
-                        if(i==-1)i=uri.lastIndexOf('/');
-                        if(i>0)
-                        {
-                            String base=uri.substring(0,i+1);
-                            log.trace("getResource in Model(1):"+uri+" "+base);
-                            SemanticModel model=SWBPlatform.getSemanticMgr().getModelByNS(base);
-                            //System.out.println("model1:"+model+" uri:"+uri+" base:"+base);
-                            if(model!=null)
-                            {
-                                Resource res=model.getRDFModel().getResource(uri);
-                                StmtIterator stit=res.listProperties();
-                                //System.out.println("model2:"+model+" uri:"+uri+" ret:"+res+" stit:"+stit.hasNext());
-                                if(stit.hasNext())
-                                {
-                                    ret=new SemanticObject(model,res,stit);
-                                }else
-                                {
-                                    m_no_objs.put(uri, uri);
-                                    return null;
-                                }
-                            }
-                        }
-
-                        if(ret==null)
-                        {
-                            log.trace("getResource in Schema(2):");
-                            //new Exception().printStackTrace();
-                            Model bmodel=SWBPlatform.getSemanticMgr().getSchema().getRDFOntModel();
-                            Resource res=bmodel.getResource(uri);
-                            SemanticModel model=SWBPlatform.getSemanticMgr().getModel(res.getModel());
-                            StmtIterator stit=res.listProperties();
-                            if(stit.hasNext())
-                            {
-                                ret=new SemanticObject(model,res,stit);
-                            }
-                        }
-
-                        if(ret==null)
-                        {
-                            log.trace("getResource in All Model(3):");
-                            //new Exception().printStackTrace();
-                            Iterator<Map.Entry<String, SemanticModel>> it=SWBPlatform.getSemanticMgr().getModels().iterator();
-                            while(it.hasNext())
-                            {
-                                Map.Entry<String, SemanticModel> ent=it.next();
-                                SemanticModel model=ent.getValue();
-                                Resource res=model.getRDFModel().getResource(uri);
-                                StmtIterator stit=res.listProperties();
-                                if(stit.hasNext())
-                                {
-                                    ret=new SemanticObject(model,res,stit);
-                                    break;
-                                }
-                            }
-                        }
+                        m_no_objs.put(uri);
+                        return null;
+                    }
+                }
+            }
 
+            if(ret==null)
+            {
+                log.trace("getResource in Schema(2):");
+                //new Exception().printStackTrace();
+                Model bmodel=SWBPlatform.getSemanticMgr().getSchema().getRDFOntModel();
+                Resource res=bmodel.getResource(uri);
+                SemanticModel model=SWBPlatform.getSemanticMgr().getModel(res.getModel());
+                StmtIterator stit=res.listProperties();
+                if(stit.hasNext())
+                {
+                    ret=new SemanticObject(model,res,stit);
+                }
+            }
 
+            if(ret==null)
+            {
+                log.trace("getResource in All Model(3):");
+                //new Exception().printStackTrace();
+                //Solo se consultan los modelos que pueden contener el URI
+                for(SemanticModel model : SWBPlatform.getSemanticMgr().getModelsBySubject(uri))
+                {
+                    if(!model.mayContainSubject(uri))continue;
+                    Resource res=model.getRDFModel().getResource(uri);
+                    StmtIterator stit=res.listProperties();
+                    if(stit.hasNext())
+                    {
+                        ret=new SemanticObject(model,res,stit);
+                        break;
                     }
-                    cacheSemanticObject(ret);
                 }
-                if(ret==null)m_no_objs.put(uri, uri);
             }
         }
+        cacheSemanticObject(ret);
+        if(ret==null)m_no_objs.put(uri);
         return ret;
     }
 
+    /**
+     * Carga en curso de un URI, recuerda el hilo que la realiza
+     */
+    private static final class Load extends CompletableFuture<SemanticObject>
+    {
+        private final Thread owner=Thread.currentThread();
+    }
+
     /**
      * Elimina el SemanticObject del cache
      * param uri del SemanticObject a eliminar del cache.
@@ -662,7 +907,8 @@ public class SemanticObject
     public static void removeCache(String uri)
     {
         //System.out.println("removeCache:"+uri);
-        m_objs.remove(uri);
+        SemanticObject obj=m_objs.remove(uri);
+        if(obj!=null && obj.m_model!=null)obj.m_model.getInverseIndex().invalidate(uri);
     }
 
 
@@ -674,6 +920,16 @@ public class SemanticObject
         //System.out.println("clearCache");
         m_objs.clear();
         m_no_objs.clear();
+        SemanticMgr mgr=SWBPlatform.getSemanticMgr();
+        if(mgr!=null)
+        {
+            //Los filtros de sujetos pudieron perder cambios hechos fuera de este nodo
+            Iterator<Map.Entry<String, SemanticModel>> it=mgr.getModels().iterator();
+            while(it.hasNext())
+            {
+                it.next().getValue().resetSubjectFilter();
+            }
+        }
     }
 
     /**
@@ -874,16 +1130,11 @@ public class SemanticObject
     {
         if(m_cls==null)
         {
-            List stmts=getProps();
-            for(int x=0;x<stmts.size();x++)
+            for(Statement st : getProps().get(RDF.type))
             {
-                Statement st=(Statement)stmts.get(x);
-                if(st.getPredicate().equals(RDF.type))
+                if(m_cls==null || !m_cls.isSWBClass())
                 {
-                    if(m_cls==null || !m_cls.isSWBClass())
-                    {
-                        m_cls = SWBPlatform.getSemanticMgr().getVocabulary().getSemanticClass(st.getResource().getURI());
-                    }
+                    m_cls = SWBPlatform.getSemanticMgr().getVocabulary().getSemanticClass(st.getResource().getURI());
                 }
             }
         }
@@ -1073,17 +1324,7 @@ public class SemanticObject
 
     public Iterator<Statement> listProperties(Property prop)
     {
-        ArrayList ret=new ArrayList();
-        List stmts=getProps();
-        for(int x=0;x<stmts.size();x++)
-        {
-            Statement statement=(Statement)stmts.get(x);
-            if(statement.getPredicate().equals(prop))
-            {
-                ret.add(statement);
-            }
-        }
-        return ret.iterator();
+        return new ArrayList<Statement>(Arrays.asList(getProps().get(prop))).iterator();
     }
 
     public void printStatements()
@@ -1103,9 +1344,7 @@ public class SemanticObject
 
     private Statement getProperty(Property prop)
     {
-        Iterator<Statement> it=listProperties(prop);
-        if(it.hasNext())return it.next();
-        return null;
+        return getProps().first(prop);
     }
 
 
@@ -1130,15 +1369,12 @@ public class SemanticObject
     {
         //System.out.println("remove:"+prop);
         //if(!m_virtual)m_res.removeAll(prop);
-        Object stmts[]=getProps().toArray();
+        Statement stmts[]=getProps().get(prop);
         for(int x=0;x<stmts.length;x++)
         {
-            Statement statement=(Statement)stmts[x];
-            if(statement.getPredicate().equals(prop))
-            {
-                remove(statement);
-                removeStatementToPropertyMap(statement, m_propertyMap);
-            }
+            Statement statement=stmts[x];
+            remove(statement);
+            removeStatementToPropertyMap(statement, m_propertyMap);
         }
     }
 
@@ -1154,16 +1390,8 @@ public class SemanticObject
         boolean ret=false;
         if(external)
         {
-            Object stmts[]=getProps().toArray();
-            for(int x=0;x<stmts.length;x++)
-            {
-                Statement statement=(Statement)stmts[x];
-                if(statement.getPredicate().equals(stmt.getPredicate()) && statement.getObject().equals(stmt.getObject()))
-                {
-                    stmt=statement;
-                    break;
-                }
-            }
+            Statement statement=getProps().find(stmt);
+            if(statement!=null)stmt=statement;
         }
 
         ret=getProps().remove(stmt);
@@ -1185,14 +1413,8 @@ public class SemanticObject
                 Resource res=node.asResource();
                 if(res!=null && res.getURI()!=null)
                 {
-                    Property iprop=stmt.getPredicate();
-                    SemanticProperty prop=SWBPlatform.getSemanticMgr().getVocabulary().getSemanticProperty(iprop);
-
-                    if(prop.isInverseOf())
-                    {
-                        SemanticObject sobj=getSemanticObjectFromCache(res.getURI());
-                        if(sobj!=null)sobj.removeInv(stmt);
-                    }
+                    SemanticObject sobj=getSemanticObjectFromCache(res.getURI());
+                    if(sobj!=null)sobj.removeInv(stmt);
                 }
             }
 
@@ -1244,15 +1466,11 @@ public class SemanticObject
         boolean contains=false;
         if(external)
         {
-            Object stmts[]=getProps().toArray();
-            for(int x=0;x<stmts.length;x++)
+            Statement statement=getProps().find(stmt);
+            if(statement!=null)
             {
-                Statement statement=(Statement)stmts[x];
-                if(statement.getPredicate().equals(stmt.getPredicate()) && statement.getObject().equals(stmt.getObject()))
-                {
-                    stmt=statement;
-                    contains=true;
-                }
+                stmt=statement;
+                contains=true;
             }
         }
 
@@ -1280,20 +1498,8 @@ public class SemanticObject
             Resource res=node.asResource();
             if(res!=null && res.getURI()!=null)
             {
-                Property iprop=stmt.getPredicate();
-                SemanticProperty prop=SWBPlatform.getSemanticMgr().getVocabulary().getSemanticProperty(iprop);
-
-                if(prop.isInverseOf())
-                {
-                    SemanticObject sobj=getSemanticObjectFromCache(res.getURI());
-                    if(sobj!=null)
-                    {
-                        if(!sobj.getPropsInv().contains(stmt))
-                        {
-                            sobj.addInvStatement(stmt);
-                        }
-                    }
-                }
+                SemanticObject sobj=getSemanticObjectFromCache(res.getURI());
+                if(sobj!=null)sobj.addInvStatement(stmt);
             }
         }
 
@@ -1304,25 +1510,13 @@ public class SemanticObject
 
     public Iterator<Statement> listInvProperties(Property prop)
     {
-        ArrayList ret=new ArrayList();
-        List stmts=getPropsInv();
-        for(int x=0;x<stmts.size();x++)
-        {
-            Statement statement=(Statement)stmts.get(x);
-            if(statement.getPredicate().equals(prop))
-            {
-                ret.add(statement);
-            }
-        }
-        return ret.iterator();
+        return new ArrayList<Statement>(Arrays.asList(getPropsInv().get(prop))).iterator();
     }
 
 
     private Statement getInvProperty(Property prop)
     {
-        Iterator<Statement> it=listInvProperties(prop);
-        if(it.hasNext())return it.next();
-        return null;
+        return getPropsInv().first(prop);
     }
 
     /**
@@ -1333,23 +1527,15 @@ public class SemanticObject
 
     protected boolean removeInv(Statement stmt)
     {
-        if(getPropsInv().remove(stmt))
-        {
-            return true;
-        }
-        return false;
+        return m_model!=null && m_model.getInverseIndex().remove(stmt);
     }
 
     private void removeInv(Property prop)
     {
-        Object stmts[]=getPropsInv().toArray();
+        Statement stmts[]=getPropsInv().get(prop);
         for(int x=0;x<stmts.length;x++)
         {
-            Statement statement=(Statement)stmts[x];
-            if(statement.getPredicate().equals(prop))
-            {
-                removeInv(statement);
-            }
+            removeInv(stmts[x]);
         }
     }
 
@@ -1357,7 +1543,7 @@ public class SemanticObject
     {
         //System.out.println(stmt);
         //new Exception().printStackTrace();
-        getPropsInv().add(stmt);
+        if(m_model!=null)m_model.getInverseIndex().add(stmt);
     }
 
 
@@ -2053,43 +2239,11 @@ public class SemanticObject
      */
     private Object externalInvokerGet(SemanticProperty prop)
     {
-        //System.out.println("externalInvokerGet:"+prop);
         Object ret = null;
         if (!m_virtual)
         {
             GenericObject obj = createGenericInstance();
-            Class cls = obj.getClass();
-            Method method=extGetMethods.get(cls.getName()+"-"+prop.getURI());
-            if(method==null)
-            {
-                String pre="get";
-                if(prop.isBoolean())pre="is";
-                String name = prop.getPropertyCodeName();
-                if (name == null)
-                {
-                    name = prop.getName();
-                }
-                name = pre + name.substring(0, 1).toUpperCase() + name.substring(1);
-                try
-                {
-                    method = cls.getMethod(name);
-                    extGetMethods.put(cls.getName()+"-"+prop.getURI(), method);
-                }
-                catch (Exception e)
-                {
-                    log.error(e);
-                }
-                //System.out.println(obj+" "+name+" "+cls+" "+method);
-            }
-            try
-            {
-                ret = method.invoke(obj);
-            }
-            catch (Exception e)
-            {
-                log.error(e);
-            }
-            //System.out.println("externalInvoker:"+ret);
+            ret = prop.getExternalAccessor(obj.getClass()).get(obj);
         }
         return ret;
     }
@@ -2103,85 +2257,11 @@ public class SemanticObject
      */
     private Object externalInvokerSet(SemanticProperty prop, Object... values)
     {
-        //System.out.println("externalInvokerSet:"+prop+" "+values);
         Object ret = null;
         if (!m_virtual)
         {
-            Object vals[]=null;
-            GenericObject obj = this.createGenericInstance();
-            Class cls = obj.getClass();
-            Method method=extSetMethods.get(cls.getName()+"-"+prop.getURI()+"-"+values.length);
-            if(method==null)
-            {
-                String name = prop.getPropertyCodeName();
-                if (name == null)
-                {
-                    name = prop.getName();
-                }
-                name = "set" + name.substring(0, 1).toUpperCase() + name.substring(1);
-                //System.out.println("name:"+name);
-                try
-                {
-                    Class types[]=null;
-                    if(prop.isLocaleable())
-                    {
-                        types=new Class[values.length];
-                        //vals=values;
-                    }else
-                    {
-                        types=new Class[1];
-                        //vals=new Object[1];
-                        //vals[0]=values[0];
-                    }
-
-                    Object o=values[0];
-                    if(o!=null)types[0]=o.getClass();
-                    else
-                    {
-                        if(prop.isString())types[0]=String.class;
-                        else if(prop.isDate())types[0]=Date.class;
-                        else if(prop.isObjectProperty())types[0]=prop.getDomainClass().getObjectClass();
-                    }
-                    Class pri=wrapperToPrimitive.get(types[0]);
-                    if(pri!=null)
-                    {
-                        types[0]=pri;
-                    }
-
-                    if(prop.isLocaleable() && values.length>1)
-                    {
-                        o=values[1];
-                        if(o==null)types[1]=String.class;
-                        else types[1]=o.getClass();
-                    }
-                    //System.out.println("getMethod:"+name+" "+types);
-                    method = cls.getMethod(name,types);
-                    extSetMethods.put(cls.getName()+"-"+prop.getURI()+"-"+values.length, method);
-                }
-                catch (Exception e)
-                {
-                    log.error(e);
-                }
-            }  // Movi la generación de "vals" a esta posición
-            // por que si esta en caché se pasaba un null al invoke - MAPS
-            if (prop.isLocaleable())
-            {
-                vals = values;
-            } else
-            {
-                vals = new Object[1];
-                vals[0] = values[0];
-            }
-
-            try
-            {
-                ret = method.invoke(obj,vals);
-            }
-            catch (Exception e)
-            {
-                log.error(e);
-            }
-            //System.out.println("externalInvoker:"+ret);
+            GenericObject obj = createGenericInstance();
+            ret = prop.getExternalAccessor(obj.getClass()).set(obj, values);
         }
         return ret;
     }
@@ -3412,8 +3492,7 @@ public class SemanticObject
     public Iterator<SemanticObject> listRelatedObjects()
     {
         ArrayList arr=new ArrayList();
-        StmtIterator stit = getModel().getRDFModel().listStatements(null, null, getRDFResource());
-        Iterator it=new SemanticIterator(stit, true);
+        Iterator it=new SemanticIterator(getPropsInv().iterator(), true, true);
         while(it.hasNext())
         {
             arr.add(it.next());
@@ -0,0 +1,624 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import org.semanticwb.Logger;
+import org.semanticwb.SWBPlatform;
+import org.semanticwb.SWBUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of {@link SemanticObject}s keyed by URI.
+ * <p>
+ * Lookups are lock free. The cache can be bounded by number of entries and by an estimate of the
+ * memory retained by the cached objects; when any limit is exceeded the configured {@link Policy}
+ * chooses the objects to evict. Objects of pinned models (those loaded with full cache) are never
+ * evicted and do not count against the limits. Evicted objects are transparently reloaded from the
+ * model they belonged to the next time they are requested.
+ *
+ * @author javier.solis.g
+ */
+public class SemanticObjectCache {
+    private static Logger log = SWBUtils.getLogger(SemanticObjectCache.class);
+
+    /**
+     * Supported eviction policies.
+     * <li>{@link #LRU} - Least recently used</li>
+     * <li>{@link #SLRU} - Segmented LRU, objects accessed more than once are protected from one-time scans</li>
+     */
+    public enum Policy {
+        LRU,
+        SLRU
+    }
+
+    /** Max number of evicted URIs remembered to route reloads to their original model. */
+    private static final int MAX_EVICTED = 10000;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> pinnedModels = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Integer> modelQuotas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> modelSizes = new ConcurrentHashMap<>();
+    private final Map<String, String> evicted = Collections.synchronizedMap(new LinkedHashMap<String, String>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_EVICTED;
+        }
+    });
+
+    /** Guards the eviction policy structures, lookups only try to acquire it. */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private EvictionPolicy policy = new SegmentedLRUPolicy();
+    private Policy policyType = Policy.SLRU;
+
+    private volatile long maxEntries = 0;
+    private volatile long maxWeight = 0;
+    private volatile int defaultModelQuota = 0;
+
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong evictableCount = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Configures cache limits.
+     *
+     * @param maxEntries  max number of evictable objects, 0 for no limit.
+     * @param maxWeight   max estimated size in bytes of evictable objects, 0 for no limit.
+     * @param modelQuota  default max number of evictable objects per model, 0 for no limit.
+     * @param policy      eviction policy.
+     */
+    public void configure(long maxEntries, long maxWeight, int modelQuota, Policy policy) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.maxWeight = Math.max(0, maxWeight);
+        this.defaultModelQuota = Math.max(0, modelQuota);
+        evictionLock.lock();
+        try {
+            if (policy != null && policy != policyType) {
+                EvictionPolicy old = this.policy;
+                this.policy = policy == Policy.LRU ? new LRUPolicy() : new SegmentedLRUPolicy();
+                this.policyType = policy;
+                Entry e = old.coldest();
+                while (e != null) {
+                    Entry next = old.warmer(e);
+                    old.onRemove(e);
+                    this.policy.onInsert(e);
+                    e = next;
+                }
+            }
+            evict(null);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the max number of evictable objects of a model.
+     *
+     * @param modelName  model name
+     * @param quota      max number of objects, 0 to use the default quota.
+     */
+    public void setModelQuota(String modelName, int quota) {
+        if (quota > 0) {
+            modelQuotas.put(modelName, quota);
+        } else {
+            modelQuotas.remove(modelName);
+        }
+    }
+
+    /**
+     * Marks a model as pinned, its objects are never evicted.
+     *
+     * @param modelName model name
+     */
+    public void pinModel(String modelName) {
+        pinnedModels.add(modelName);
+    }
+
+    /**
+     * Checks if a model is pinned.
+     *
+     * @param modelName model name
+     * @return true if objects of the model are never evicted.
+     */
+    public boolean isPinnedModel(String modelName) {
+        return modelName != null && pinnedModels.contains(modelName);
+    }
+
+    /**
+     * Gets a cached object.
+     *
+     * @param uri object URI
+     * @return the cached object or null.
+     */
+    public SemanticObject get(String uri) {
+        Entry e = entries.get(uri);
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!e.pinned && evictionLock.tryLock()) {
+            //Access order is best effort, contended lookups do not wait for the lock
+            try {
+                if (e.queue != null) {
+                    policy.onAccess(e);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return e.obj;
+    }
+
+    /**
+     * Checks if an object is cached without updating its access order or the statistics.
+     *
+     * @param uri object URI
+     * @return true if the object is cached.
+     */
+    public boolean contains(String uri) {
+        return entries.containsKey(uri);
+    }
+
+    /**
+     * Puts an object in the cache, replacing any object with the same URI.
+     *
+     * @param obj the object
+     */
+    public void put(SemanticObject obj) {
+        put(obj, false);
+    }
+
+    /**
+     * Puts an object in the cache if no object with the same URI is cached.
+     *
+     * @param obj the object
+     * @return the previously cached object or the given object.
+     */
+    public SemanticObject putIfAbsent(SemanticObject obj) {
+        Entry e = newEntry(obj, false);
+        Entry old = entries.putIfAbsent(e.uri, e);
+        if (old != null) {
+            return old.obj;
+        }
+        link(e, null);
+        return obj;
+    }
+
+    /**
+     * Puts an object in the cache.
+     *
+     * @param obj    the object
+     * @param pinned whether the object must never be evicted.
+     */
+    public void put(SemanticObject obj, boolean pinned) {
+        Entry e = newEntry(obj, pinned);
+        Entry old = entries.put(e.uri, e);
+        link(e, old);
+    }
+
+    /**
+     * Removes an object from the cache.
+     *
+     * @param uri object URI
+     * @return the removed object or null.
+     */
+    public SemanticObject remove(String uri) {
+        Entry e = entries.remove(uri);
+        if (e == null) {
+            return null;
+        }
+        evictionLock.lock();
+        try {
+            unlink(e);
+        } finally {
+            evictionLock.unlock();
+        }
+        return e.obj;
+    }
+
+    /**
+     * Removes all objects from the cache.
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (Entry e : entries.values()) {
+                invalidateInverse(e);
+            }
+            entries.clear();
+            evicted.clear();
+            modelSizes.clear();
+            policy.clear();
+            weight.set(0);
+            evictableCount.set(0);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the model an evicted object was loaded from, the reference is consumed.
+     *
+     * @param uri object URI
+     * @return the model or null if the object was not evicted.
+     */
+    public SemanticModel getEvictedModel(String uri) {
+        String name = evicted.remove(uri);
+        return name != null ? SWBPlatform.getSemanticMgr().getModel(name) : null;
+    }
+
+    /**
+     * Gets the number of cached objects.
+     * @return number of cached objects.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the estimated size in bytes of evictable objects.
+     * @return estimated size in bytes.
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * Gets the number of cache hits.
+     * @return hit count.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of cache misses.
+     * @return miss count.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of evicted objects.
+     * @return eviction count.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SemanticObjectCache{policy=" + policyType + ", size=" + size() + ", evictable=" + evictableCount.get()
+                + ", weight=" + weight.get() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    private Entry newEntry(SemanticObject obj, boolean pinned) {
+        SemanticModel model = obj.getModel();
+        String modelName = model != null ? model.getName() : null;
+        pinned = pinned || isPinnedModel(modelName);
+        return new Entry(obj.getURI(), obj, modelName, pinned ? 0 : obj.estimateSize(), pinned);
+    }
+
+    private void link(Entry e, Entry old) {
+        evictionLock.lock();
+        try {
+            if (old != null) {
+                unlink(old);
+            }
+            //A concurrent put may have replaced this entry before acquiring the lock
+            if (!e.pinned && entries.get(e.uri) == e) {
+                policy.onInsert(e);
+                weight.addAndGet(e.weight);
+                evictableCount.incrementAndGet();
+                if (e.model != null) {
+                    modelSizes.computeIfAbsent(e.model, k -> new AtomicInteger()).incrementAndGet();
+                }
+                evict(e.model);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void unlink(Entry e) {
+        if (e.queue != null) {
+            policy.onRemove(e);
+            weight.addAndGet(-e.weight);
+            evictableCount.decrementAndGet();
+            if (e.model != null) {
+                AtomicInteger count = modelSizes.get(e.model);
+                if (count != null) {
+                    count.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts objects until the cache is within its limits. Must be called holding the eviction lock.
+     *
+     * @param modelName model that received an object, checked against its quota.
+     */
+    private void evict(String modelName) {
+        if (modelName != null) {
+            Integer quota = modelQuotas.get(modelName);
+            int max = quota != null ? quota : defaultModelQuota;
+            AtomicInteger count = modelSizes.get(modelName);
+            if (max > 0 && count != null) {
+                Entry e = policy.coldest();
+                while (e != null && count.get() > max) {
+                    Entry next = policy.warmer(e);
+                    if (modelName.equals(e.model)) {
+                        evictEntry(e);
+                    }
+                    e = next;
+                }
+            }
+        }
+
+        long maxE = maxEntries;
+        long maxW = maxWeight;
+        while ((maxE > 0 && evictableCount.get() > maxE) || (maxW > 0 && weight.get() > maxW)) {
+            Entry e = policy.coldest();
+            if (e == null) {
+                break;
+            }
+            evictEntry(e);
+        }
+    }
+
+    private void evictEntry(Entry e) {
+        unlink(e);
+        if (entries.remove(e.uri, e)) {
+            invalidateInverse(e);
+            evictions.increment();
+            if (e.model != null) {
+                evicted.put(e.uri, e.model);
+            }
+        }
+    }
+
+    private void invalidateInverse(Entry e) {
+        SemanticModel model = e.obj.getModel();
+        if (model != null) {
+            model.getInverseIndex().invalidate(e.uri);
+        }
+    }
+
+    /**
+     * Cache entry, links are only modified holding the eviction lock.
+     */
+    static final class Entry {
+        final String uri;
+        final SemanticObject obj;
+        final String model;
+        final int weight;
+        final boolean pinned;
+        Entry prev;
+        Entry next;
+        AccessOrderQueue queue;
+
+        Entry(String uri, SemanticObject obj, String model, int weight, boolean pinned) {
+            this.uri = uri;
+            this.obj = obj;
+            this.model = model;
+            this.weight = weight;
+            this.pinned = pinned;
+        }
+    }
+
+    /**
+     * Doubly linked list of entries from least to most recently used.
+     */
+    static final class AccessOrderQueue {
+        private Entry head;
+        private Entry tail;
+        private int size;
+
+        void addLast(Entry e) {
+            e.queue = this;
+            e.prev = tail;
+            e.next = null;
+            if (tail == null) {
+                head = e;
+            } else {
+                tail.next = e;
+            }
+            tail = e;
+            size++;
+        }
+
+        void remove(Entry e) {
+            if (e.prev == null) {
+                head = e.next;
+            } else {
+                e.prev.next = e.next;
+            }
+            if (e.next == null) {
+                tail = e.prev;
+            } else {
+                e.next.prev = e.prev;
+            }
+            e.prev = null;
+            e.next = null;
+            e.queue = null;
+            size--;
+        }
+
+        void moveToLast(Entry e) {
+            if (tail != e) {
+                remove(e);
+                addLast(e);
+            }
+        }
+
+        Entry first() {
+            return head;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            Entry e = head;
+            while (e != null) {
+                Entry next = e.next;
+                e.prev = null;
+                e.next = null;
+                e.queue = null;
+                e = next;
+            }
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * Eviction policy, all methods are called holding the eviction lock.
+     */
+    abstract static class EvictionPolicy {
+        abstract void onInsert(Entry e);
+
+        abstract void onAccess(Entry e);
+
+        abstract void onRemove(Entry e);
+
+        /** Gets the next eviction candidate. */
+        abstract Entry coldest();
+
+        /** Gets the eviction candidate following the given one. */
+        abstract Entry warmer(Entry e);
+
+        abstract void clear();
+    }
+
+    /**
+     * Least recently used policy.
+     */
+    static final class LRUPolicy extends EvictionPolicy {
+        private final AccessOrderQueue queue = new AccessOrderQueue();
+
+        @Override
+        void onInsert(Entry e) {
+            queue.addLast(e);
+        }
+
+        @Override
+        void onAccess(Entry e) {
+            queue.moveToLast(e);
+        }
+
+        @Override
+        void onRemove(Entry e) {
+            queue.remove(e);
+        }
+
+        @Override
+        Entry coldest() {
+            return queue.first();
+        }
+
+        @Override
+        Entry warmer(Entry e) {
+            return e.next;
+        }
+
+        @Override
+        void clear() {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Segmented LRU policy. New objects enter a probation segment and are promoted to the protected
+     * segment when accessed again, so full scans over the model do not flush the working set.
+     */
+    static final class SegmentedLRUPolicy extends EvictionPolicy {
+        /** Max percentage of evictable entries held in the protected segment. */
+        private static final int PROTECTED_PERCENT = 80;
+
+        private final AccessOrderQueue probation = new AccessOrderQueue();
+        private final AccessOrderQueue protect = new AccessOrderQueue();
+
+        @Override
+        void onInsert(Entry e) {
+            probation.addLast(e);
+        }
+
+        @Override
+        void onAccess(Entry e) {
+            if (e.queue == protect) {
+                protect.moveToLast(e);
+            } else {
+                probation.remove(e);
+                protect.addLast(e);
+                int max = (probation.size() + protect.size()) * PROTECTED_PERCENT / 100;
+                while (protect.size() > max && protect.first() != null) {
+                    Entry demoted = protect.first();
+                    protect.remove(demoted);
+                    probation.addLast(demoted);
+                }
+            }
+        }
+
+        @Override
+        void onRemove(Entry e) {
+            e.queue.remove(e);
+        }
+
+        @Override
+        Entry coldest() {
+            Entry e = probation.first();
+            return e != null ? e : protect.first();
+        }
+
+        @Override
+        Entry warmer(Entry e) {
+            if (e.next != null) {
+                return e.next;
+            }
+            return e.queue == probation ? protect.first() : null;
+        }
+
+        @Override
+        void clear() {
+            probation.clear();
+            protect.clear();
+        }
+    }
+}
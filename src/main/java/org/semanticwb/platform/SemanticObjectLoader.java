@@ -0,0 +1,361 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.db.impl.SQLCache_SWB;
+import com.hp.hpl.jena.graph.GraphStatisticsHandler;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.semanticwb.Logger;
+import org.semanticwb.SWBPlatform;
+import org.semanticwb.SWBUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the full {@link SemanticObject} cache of a model.
+ * <p>
+ * The statements of the model are streamed once by the calling thread and partitioned by subject
+ * (and by object for the inverse index) among the threads of a fixed pool. Each worker groups the
+ * statements of its objects as chunks arrive and, since the statements of an object may come at any
+ * point of the stream, publishes each object once, with its inverse entry, when the stream ends.
+ * <p>
+ * Progress is reported against an approximate size: the statistic of the store when it has one, or the
+ * statements read by the previous load of the model.
+ *
+ * @author javier.solis.g
+ */
+final class SemanticObjectLoader {
+    private static Logger log = SWBUtils.getLogger(SemanticObjectLoader.class);
+
+    /** Statements sent to a worker at once. */
+    private static final int CHUNK_SIZE = 1024;
+
+    /** Max chunks waiting per worker, bounds the memory used by the stream. */
+    private static final int QUEUE_SIZE = 16;
+
+    /** Interval between progress reports. */
+    private static final long REPORT_INTERVAL = 10000;
+
+    private static final Chunk END = new Chunk();
+
+    private static final AtomicInteger POOL_ID = new AtomicInteger();
+
+    private final SemanticModel model;
+    private final int partitions;
+    private final AtomicLong published = new AtomicLong();
+    private volatile boolean aborted = false;
+
+    /**
+     * Statements of a partition sent by the reader to a worker.
+     */
+    private static final class Chunk {
+        final List<Statement> forward = new ArrayList<>(CHUNK_SIZE);
+        final List<Statement> inverse = new ArrayList<>(CHUNK_SIZE);
+
+        int size() {
+            return forward.size() + inverse.size();
+        }
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param model      model to load
+     * @param partitions number of worker partitions
+     */
+    SemanticObjectLoader(SemanticModel model, int partitions) {
+        this.model = model;
+        this.partitions = Math.max(1, partitions);
+    }
+
+    /**
+     * Loads all objects of the model into the cache.
+     */
+    void load() {
+        long time = System.currentTimeMillis();
+        long count = 0;
+        long total = approximateSize();
+        //The model is not counted before the stream, a saturated filter is rebuilt once it is set
+        SubjectBloomFilter filter = model.createSubjectFilter(total > 0 ? total
+                : Long.parseLong(SWBPlatform.getEnv("swb/semanticObjectSubjectFilterSize", "100000")));
+
+        int id = POOL_ID.incrementAndGet();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "SemanticObjectLoader-" + id + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        List<BlockingQueue<Chunk>> queues = new ArrayList<>(partitions);
+        List<Future<?>> tasks = new ArrayList<>(partitions);
+        Chunk[] pending = new Chunk[partitions];
+        for (int i = 0; i < partitions; i++) {
+            BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+            queues.add(queue);
+            tasks.add(pool.submit(() -> {
+                //Releases the connections leased by the worker
+                try (SQLCache_SWB.ThreadScope scope = SQLCache_SWB.openThreadScope()) {
+                    work(queue);
+                }
+            }));
+            pending[i] = new Chunk();
+        }
+
+        StmtIterator it = model.getRDFModel().listStatements();
+        try {
+            long report = time + REPORT_INTERVAL;
+            while (it.hasNext()) {
+                Statement st = it.next();
+                String uri = st.getSubject().getURI();
+                if (uri != null) {
+                    model.registerSubject(filter, uri);
+                    int p = partition(uri);
+                    pending[p].forward.add(st);
+                    if (pending[p].size() >= CHUNK_SIZE) {
+                        queues.get(p).put(pending[p]);
+                        pending[p] = new Chunk();
+                    }
+                }
+                RDFNode obj = st.getObject();
+                if (obj.isURIResource()) {
+                    int p = partition(obj.asResource().getURI());
+                    pending[p].inverse.add(st);
+                    if (pending[p].size() >= CHUNK_SIZE) {
+                        queues.get(p).put(pending[p]);
+                        pending[p] = new Chunk();
+                    }
+                }
+
+                count++;
+                if ((count & 0xFFF) == 0 && System.currentTimeMillis() > report) {
+                    report(count, total, time);
+                    report = System.currentTimeMillis() + REPORT_INTERVAL;
+                }
+            }
+        } catch (InterruptedException e) {
+            aborted = true;
+            Thread.currentThread().interrupt();
+            log.error("Loading SemanticObject:" + model.getName() + " interrupted", e);
+        } catch (RuntimeException e) {
+            //Objects of an incomplete stream are withdrawn by the workers
+            aborted = true;
+            throw e;
+        } finally {
+            it.close();
+            try {
+                for (int i = 0; i < partitions; i++) {
+                    if (pending[i].size() > 0) {
+                        queues.get(i).put(pending[i]);
+                    }
+                    queues.get(i).put(END);
+                }
+                pool.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                aborted = true;
+                pool.shutdownNow();
+            }
+        }
+
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                aborted = true;
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                break;
+            } catch (ExecutionException e) {
+                log.error("Error loading SemanticObject:" + model.getName(), e.getCause());
+            }
+        }
+        if (!aborted) {
+            model.setSubjectFilter(filter);
+            model.setLoadedStatements(count);
+        } else {
+            model.discardSubjectFilter();
+        }
+
+        time = System.currentTimeMillis() - time;
+        log.event("Loaded SemanticObject:" + model.getName() + " objects:" + published.get()
+                + " statements:" + count + " time:" + time + "ms" + " (" + rate(count, time) + " st/s)");
+    }
+
+    /**
+     * Groups the statements of a partition and publishes its objects when the stream ends.
+     */
+    private void work(BlockingQueue<Chunk> queue) {
+        Map<String, List<Statement>> forward = new HashMap<>();
+        Map<String, List<Statement>> inverse = new HashMap<>();
+        boolean failed = false;
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (chunk == END) {
+                break;
+            }
+            if (failed || aborted) {
+                //Keeps draining so the reader never blocks
+                continue;
+            }
+            try {
+                for (Statement st : chunk.forward) {
+                    forward.computeIfAbsent(st.getSubject().getURI(), k -> new ArrayList<>()).add(st);
+                }
+                for (Statement st : chunk.inverse) {
+                    inverse.computeIfAbsent(st.getObject().asResource().getURI(), k -> new ArrayList<>()).add(st);
+                }
+            } catch (Throwable e) {
+                log.error("Error loading SemanticObject:" + model.getName(), e);
+                failed = true;
+            }
+        }
+        if (!failed && !aborted) {
+            publish(forward, inverse);
+        }
+    }
+
+    private void publish(Map<String, List<Statement>> forward, Map<String, List<Statement>> inverse) {
+        SemanticObjectCache cache = SemanticObject.getCache();
+        InverseIndex index = model.getInverseIndex();
+        List<String> uris = new ArrayList<>(forward.size());
+        try {
+            for (Map.Entry<String, List<Statement>> entry : forward.entrySet()) {
+                if (aborted) {
+                    break;
+                }
+                List<Statement> stmts = entry.getValue();
+                Resource res = stmts.get(0).getSubject();
+                SemanticObject obj = SemanticObject.createCachedSemanticObject(model, res, stmts, resolveClass(stmts));
+                cache.put(obj, true);
+                uris.add(entry.getKey());
+                List<Statement> inv = inverse.remove(entry.getKey());
+                index.put(entry.getKey(), inv != null ? inv : Collections.<Statement>emptyList());
+            }
+        } catch (RuntimeException | Error e) {
+            withdraw(uris);
+            throw e;
+        }
+        if (aborted) {
+            withdraw(uris);
+        } else {
+            published.addAndGet(uris.size());
+        }
+    }
+
+    /**
+     * Removes the objects published from an incomplete load, they are loaded again on demand.
+     */
+    private void withdraw(List<String> uris) {
+        SemanticObjectCache cache = SemanticObject.getCache();
+        InverseIndex index = model.getInverseIndex();
+        for (String uri : uris) {
+            cache.remove(uri);
+            index.invalidate(uri);
+        }
+    }
+
+    /**
+     * Resolves the class of an object from its types, the first SWB class found has preference.
+     */
+    private SemanticClass resolveClass(List<Statement> stmts) {
+        SemanticClass cls = null;
+        SemanticVocabulary vocabulary = SWBPlatform.getSemanticMgr().getVocabulary();
+        for (Statement st : stmts) {
+            if (st.getPredicate().equals(RDF.type) && (cls == null || !cls.isSWBClass())) {
+                //Vocabulary may register classes while resolving them
+                synchronized (vocabulary) {
+                    cls = vocabulary.getSemanticClass(st.getResource().getURI());
+                }
+            }
+        }
+        return cls;
+    }
+
+    private int partition(String uri) {
+        return (uri.hashCode() & 0x7fffffff) % partitions;
+    }
+
+    /**
+     * Gets the approximate number of statements of the model without counting them.
+     *
+     * @return the statistic of the store, the statements of the previous load or -1 if unknown.
+     */
+    private long approximateSize() {
+        try {
+            GraphStatisticsHandler stats = model.getRDFModel().getGraph().getStatisticsHandler();
+            if (stats != null) {
+                long size = stats.getStatistic(Node.ANY, Node.ANY, Node.ANY);
+                if (size >= 0) {
+                    return size;
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Model statistics not available:" + model.getName());
+        }
+        return model.getLoadedStatements();
+    }
+
+    private void report(long count, long total, long time) {
+        long elapsed = System.currentTimeMillis() - time;
+        long rate = rate(count, elapsed);
+        StringBuilder msg = new StringBuilder("Loading SemanticObject:").append(model.getName())
+                .append(" statements:").append(count);
+        if (total > 0) {
+            msg.append("/~").append(total);
+        }
+        msg.append(" (").append(rate).append(" st/s)");
+        if (total > count && rate > 0) {
+            msg.append(" ETA:").append((total - count) / rate).append('s');
+        }
+        log.event(msg.toString());
+    }
+
+    private static long rate(long count, long millis) {
+        return millis > 0 ? count * 1000 / millis : count;
+    }
+}
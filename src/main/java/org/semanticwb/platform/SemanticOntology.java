@@ -35,7 +35,6 @@ import org.semanticwb.model.GenericObject;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map.Entry;
 
 /**
  * High level wrapper class for an Ontology Model.
@@ -211,10 +210,10 @@ public class SemanticOntology {
 
         if (ret == null) {
             LOG.trace("getResource in All Model(3):");
-            Iterator<Entry<String, SemanticModel>> it = SWBPlatform.getSemanticMgr().getModels().iterator();
-            while (it.hasNext()) {
-                Entry<String, SemanticModel> ent = it.next();
-                SemanticModel model = ent.getValue();
+            for (SemanticModel model : SWBPlatform.getSemanticMgr().getModelsBySubject(uri)) {
+                if (!model.mayContainSubject(uri)) {
+                    continue;
+                }
                 Resource res = model.getRDFModel().getResource(uri);
                 if (model.getRDFModel().contains(res, type)) {
                     ret = res;
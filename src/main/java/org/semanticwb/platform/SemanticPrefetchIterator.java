@@ -0,0 +1,149 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.util.iterator.ClosableIterator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Iterator that reads ahead a window of elements from another iterator and loads the {@link SemanticObject}s
+ * they refer to with a single call to {@link SemanticObject#createSemanticObjects(java.util.Collection)}.
+ * Elements, including null elements, are returned unchanged.
+ * <p>
+ * Reading ahead only pays off when the whole iterator is consumed, so it is enabled by the callers that do.
+ * {@link #remove()} is only supported when no elements are buffered after the current one.
+ *
+ * @author javier.solis.g
+ */
+public class SemanticPrefetchIterator implements ClosableIterator {
+    private final Iterator iterator;
+    private final boolean invert;
+    private final int window;
+    private final ArrayDeque<Object> buffer;
+
+    /** Placeholder of null elements in the buffer. */
+    private static final Object NULL = new Object();
+
+    /**
+     * Creates a new {@link SemanticPrefetchIterator}.
+     *
+     * @param iterator the source iterator
+     * @param invert   whether Statements refer to their subject instead of their object.
+     * @param window   number of elements read ahead
+     */
+    public SemanticPrefetchIterator(Iterator iterator, boolean invert, int window) {
+        this.iterator = iterator;
+        this.invert = invert;
+        this.window = window;
+        this.buffer = new ArrayDeque<>(window);
+    }
+
+    /**
+     * Wraps an iterator using the configured prefetch window, the iterator is returned as is if prefetch is disabled.
+     *
+     * @param iterator the source iterator
+     * @param invert   whether Statements refer to their subject instead of their object.
+     * @return the iterator
+     */
+    public static Iterator wrap(Iterator iterator, boolean invert) {
+        int window = SemanticObject.getPrefetchWindow();
+        if (iterator == null || window <= 1 || iterator instanceof SemanticPrefetchIterator) {
+            return iterator;
+        }
+        return new SemanticPrefetchIterator(iterator, invert, window);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !buffer.isEmpty() || iterator.hasNext();
+    }
+
+    @Override
+    public Object next() {
+        if (buffer.isEmpty()) {
+            fill();
+        }
+        if (buffer.isEmpty()) {
+            return iterator.next();
+        }
+        Object ret = buffer.poll();
+        return ret == NULL ? null : ret;
+    }
+
+    @Override
+    public void remove() {
+        if (!buffer.isEmpty()) {
+            throw new IllegalStateException("remove not supported while elements are buffered");
+        }
+        iterator.remove();
+    }
+
+    @Override
+    public void close() {
+        buffer.clear();
+        if (iterator instanceof ClosableIterator) {
+            ((ClosableIterator) iterator).close();
+        }
+    }
+
+    /**
+     * Reads the next window and loads the objects not in cache.
+     */
+    private void fill() {
+        List<String> uris = new ArrayList<>(window);
+        while (buffer.size() < window && iterator.hasNext()) {
+            Object obj = iterator.next();
+            buffer.add(obj == null ? NULL : obj);
+            String uri = getURI(obj);
+            if (uri != null && SemanticObject.getSemanticObjectFromCache(uri) == null) {
+                uris.add(uri);
+            }
+        }
+        if (uris.size() > 1) {
+            SemanticObject.createSemanticObjects(uris);
+        }
+    }
+
+    private String getURI(Object obj) {
+        if (obj instanceof Statement) {
+            Statement st = (Statement) obj;
+            if (invert) {
+                return st.getSubject().getURI();
+            }
+            RDFNode node = st.getObject();
+            return node.isURIResource() ? node.asResource().getURI() : null;
+        } else if (obj instanceof Resource) {
+            return ((Resource) obj).getURI();
+        } else if (obj instanceof String) {
+            return (String) obj;
+        }
+        return null;
+    }
+}
@@ -34,6 +34,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.semanticwb.Logger;
 import org.semanticwb.SWBPlatform;
@@ -117,6 +119,11 @@ public class SemanticProperty {
     private Boolean hasHierarchicalFilterClass = null;
     private SemanticClass hierarchicalFilterClass = null;
 
+    /**
+     * Accessors of external invocation properties by GenericObject class.
+     */
+    private final ConcurrentHashMap<Class<?>, ExternalAccessor> externalAccessors = new ConcurrentHashMap<>();
+
     /**
      * The is required.
      */
@@ -199,7 +206,7 @@ public class SemanticProperty {
             m_inverse.inverse = true;
             m_inverse.m_inverse = this;
         }
-        observers = Collections.synchronizedList(new ArrayList<>());
+        observers = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -647,6 +654,19 @@ public class SemanticProperty {
         return externalInvocation;
     }
 
+    /**
+     * Gets the accessor of this external invocation property on a GenericObject class.
+     * @param cls GenericObject class
+     * @return the accessor
+     */
+    ExternalAccessor getExternalAccessor(Class<?> cls) {
+        ExternalAccessor ret = externalAccessors.get(cls);
+        if (ret == null) {
+            ret = externalAccessors.computeIfAbsent(cls, c -> new ExternalAccessor(c, this));
+        }
+        return ret;
+    }
+
     /**
      * Gets the display property associated to this property.
      *
@@ -1092,6 +1112,7 @@ public class SemanticProperty {
      */
     public void registerObserver(SemanticObserver observer) {
         observers.add(observer);
+        SubscriptionIndex.invalidate();
     }
 
     /**
@@ -1101,6 +1122,16 @@ public class SemanticProperty {
      */
     public void removeObserver(SemanticObserver observer) {
         observers.remove(observer);
+        SubscriptionIndex.invalidate();
+    }
+
+    /**
+     * Gets the Property observers.
+     *
+     * @return the observers
+     */
+    List<SemanticObserver> getObservers() {
+        return observers;
     }
 
     /**
@@ -1110,7 +1141,10 @@ public class SemanticProperty {
      * @param prop   the changed {@link SemanticProperty}
      * @param lang   the language
      * @param action the action that triggered the change
+     * @deprecated observers of the property are called by {@link SemanticMgr#notifyChange(SemanticObject, Object, String, String)}
+     * through its SubscriptionIndex, calling this method skips the model observers and subscriptions.
      */
+    @Deprecated
     public void notifyChange(SemanticObject obj, Object prop, String lang, String action) {
         for (SemanticObserver observer : observers) {
             try {
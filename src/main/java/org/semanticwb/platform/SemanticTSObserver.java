@@ -23,6 +23,8 @@ package org.semanticwb.platform;
 
 import com.hp.hpl.jena.rdf.model.Statement;
 
+import java.util.List;
+
 /**
  * @author javier.solis.g
  */
@@ -38,4 +40,21 @@ public interface SemanticTSObserver {
      * @param remote the bollean
      */
      void notify(SemanticObject obj, Statement stmt, String action, boolean remote);
+
+    /**
+     * This method is called once with several changes of the same
+     * SemanticObject, as when the changes of another node are applied
+     * in batch. The default implementation calls {@link #notify} for
+     * each change.
+     *
+     * @param obj     the SemanticObject
+     * @param stmts   the Statements, null for the removal of the object
+     * @param actions the action of each Statement
+     * @param remote  the bollean
+     */
+    default void notifyBatch(SemanticObject obj, List<Statement> stmts, List<String> actions, boolean remote) {
+        for (int i = 0; i < stmts.size(); i++) {
+            notify(obj, stmts.get(i), actions.get(i), remote);
+        }
+    }
 }
@@ -429,6 +429,7 @@ public class SemanticVocabulary {
             SemanticClass tpc = tpcit.next();
             filterProperties(tpc);
         }
+        SubscriptionIndex.invalidate();
     }
 
     /**
@@ -670,6 +671,7 @@ public class SemanticVocabulary {
             if (filterProps) {
                 filterProperties(cls);
             }
+            SubscriptionIndex.invalidate();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,339 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Statements of a {@link SemanticObject} indexed by predicate.
+ * <p>
+ * Statements are kept in a small array per predicate. Reads are lock free over an immutable snapshot,
+ * writes are serialized and only copy the array of the affected predicate. Statements of a predicate keep their
+ * insertion order, a full iteration returns them grouped by predicate in the order the predicates were added.
+ *
+ * @author javier.solis.g
+ */
+final class StatementIndex implements Iterable<Statement> {
+    private static final Statement[] EMPTY = new Statement[0];
+    private static final Table EMPTY_TABLE = new Table(new Node[0], new Statement[0][], 0);
+
+    private volatile Table table = EMPTY_TABLE;
+
+    /**
+     * Immutable snapshot of the index.
+     */
+    private static final class Table {
+        final Node[] predicates;
+        final Statement[][] buckets;
+        final int size;
+
+        Table(Node[] predicates, Statement[][] buckets, int size) {
+            this.predicates = predicates;
+            this.buckets = buckets;
+            this.size = size;
+        }
+
+        int indexOf(Node predicate) {
+            for (int i = 0; i < predicates.length; i++) {
+                if (predicates[i] == predicate) {
+                    return i;
+                }
+            }
+            for (int i = 0; i < predicates.length; i++) {
+                if (predicates[i].equals(predicate)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the statements of a predicate, the returned array must not be modified.
+     *
+     * @param prop the predicate
+     * @return the statements, never null.
+     */
+    Statement[] get(Property prop) {
+        Table t = table;
+        int i = t.indexOf(prop.asNode());
+        return i < 0 ? EMPTY : t.buckets[i];
+    }
+
+    /**
+     * Gets the first statement of a predicate.
+     *
+     * @param prop the predicate
+     * @return the statement or null.
+     */
+    Statement first(Property prop) {
+        Statement[] bucket = get(prop);
+        return bucket.length > 0 ? bucket[0] : null;
+    }
+
+    /**
+     * Finds the statement with the same predicate and object of the given one.
+     *
+     * @param stmt statement to find
+     * @return the indexed statement or null.
+     */
+    Statement find(Statement stmt) {
+        RDFNode obj = stmt.getObject();
+        for (Statement statement : get(stmt.getPredicate())) {
+            if (statement.getObject().equals(obj)) {
+                return statement;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a statement is indexed.
+     *
+     * @param stmt the statement
+     * @return true if the statement is indexed.
+     */
+    boolean contains(Statement stmt) {
+        for (Statement statement : get(stmt.getPredicate())) {
+            if (statement.equals(stmt)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a statement.
+     *
+     * @param stmt the statement
+     */
+    synchronized void add(Statement stmt) {
+        insert(stmt, false);
+    }
+
+    /**
+     * Inserts a statement before other statements with the same predicate.
+     *
+     * @param stmt the statement
+     */
+    synchronized void addFirst(Statement stmt) {
+        insert(stmt, true);
+    }
+
+    /**
+     * Appends a list of statements building each predicate array once.
+     *
+     * @param stmts the statements
+     */
+    synchronized void addAll(Collection<Statement> stmts) {
+        if (stmts.isEmpty()) {
+            return;
+        }
+        Table t = table;
+        Node[] predicates = t.predicates;
+        Statement[][] buckets = t.buckets;
+        int[] counts = new int[predicates.length + stmts.size()];
+        Node[] newPredicates = Arrays.copyOf(predicates, predicates.length + stmts.size());
+        int npreds = predicates.length;
+
+        //Count statements per predicate
+        for (Statement stmt : stmts) {
+            int i = indexOf(newPredicates, npreds, stmt.getPredicate().asNode());
+            if (i < 0) {
+                i = npreds++;
+                newPredicates[i] = stmt.getPredicate().asNode();
+            }
+            counts[i]++;
+        }
+
+        Statement[][] newBuckets = new Statement[npreds][];
+        int[] pos = new int[npreds];
+        for (int i = 0; i < npreds; i++) {
+            Statement[] old = i < buckets.length ? buckets[i] : EMPTY;
+            newBuckets[i] = counts[i] == 0 ? old : Arrays.copyOf(old, old.length + counts[i]);
+            pos[i] = old.length;
+        }
+        for (Statement stmt : stmts) {
+            int i = indexOf(newPredicates, npreds, stmt.getPredicate().asNode());
+            newBuckets[i][pos[i]++] = stmt;
+        }
+        table = new Table(Arrays.copyOf(newPredicates, npreds), newBuckets, t.size + stmts.size());
+    }
+
+    /**
+     * Removes a statement.
+     *
+     * @param stmt the statement
+     * @return true if the statement was removed.
+     */
+    synchronized boolean remove(Statement stmt) {
+        Table t = table;
+        int i = t.indexOf(stmt.getPredicate().asNode());
+        if (i < 0) {
+            return false;
+        }
+        Statement[] bucket = t.buckets[i];
+        int j = 0;
+        while (j < bucket.length && !bucket[j].equals(stmt)) {
+            j++;
+        }
+        if (j == bucket.length) {
+            return false;
+        }
+
+        if (bucket.length == 1) {
+            //Remove predicate
+            int n = t.predicates.length - 1;
+            Node[] predicates = new Node[n];
+            Statement[][] buckets = new Statement[n][];
+            System.arraycopy(t.predicates, 0, predicates, 0, i);
+            System.arraycopy(t.predicates, i + 1, predicates, i, n - i);
+            System.arraycopy(t.buckets, 0, buckets, 0, i);
+            System.arraycopy(t.buckets, i + 1, buckets, i, n - i);
+            table = new Table(predicates, buckets, t.size - 1);
+        } else {
+            Statement[] newBucket = new Statement[bucket.length - 1];
+            System.arraycopy(bucket, 0, newBucket, 0, j);
+            System.arraycopy(bucket, j + 1, newBucket, j, bucket.length - j - 1);
+            Statement[][] buckets = t.buckets.clone();
+            buckets[i] = newBucket;
+            table = new Table(t.predicates, buckets, t.size - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all statements.
+     */
+    synchronized void clear() {
+        table = EMPTY_TABLE;
+    }
+
+    /**
+     * Gets the number of statements.
+     * @return number of statements.
+     */
+    int size() {
+        return table.size;
+    }
+
+    /**
+     * Gets a snapshot of all statements.
+     * @return list of statements.
+     */
+    List<Statement> toList() {
+        return Arrays.asList(toArray());
+    }
+
+    /**
+     * Gets a snapshot of all statements.
+     * @return array of statements.
+     */
+    Statement[] toArray() {
+        Table t = table;
+        if (t.size == 0) {
+            return EMPTY;
+        }
+        Statement[] ret = new Statement[t.size];
+        int pos = 0;
+        for (Statement[] bucket : t.buckets) {
+            System.arraycopy(bucket, 0, ret, pos, bucket.length);
+            pos += bucket.length;
+        }
+        return ret;
+    }
+
+    /**
+     * Iterates over a snapshot of all statements.
+     */
+    @Override
+    public Iterator<Statement> iterator() {
+        final Table t = table;
+        return new Iterator<Statement>() {
+            private int b = 0;
+            private int s = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (b < t.buckets.length && s >= t.buckets[b].length) {
+                    b++;
+                    s = 0;
+                }
+                return b < t.buckets.length;
+            }
+
+            @Override
+            public Statement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return t.buckets[b][s++];
+            }
+        };
+    }
+
+    private void insert(Statement stmt, boolean first) {
+        Table t = table;
+        Node predicate = stmt.getPredicate().asNode();
+        int i = t.indexOf(predicate);
+        if (i < 0) {
+            int n = t.predicates.length;
+            Node[] predicates = Arrays.copyOf(t.predicates, n + 1);
+            Statement[][] buckets = Arrays.copyOf(t.buckets, n + 1);
+            predicates[n] = predicate;
+            buckets[n] = new Statement[]{stmt};
+            table = new Table(predicates, buckets, t.size + 1);
+        } else {
+            Statement[] bucket = t.buckets[i];
+            Statement[] newBucket = new Statement[bucket.length + 1];
+            if (first) {
+                newBucket[0] = stmt;
+                System.arraycopy(bucket, 0, newBucket, 1, bucket.length);
+            } else {
+                System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+                newBucket[bucket.length] = stmt;
+            }
+            Statement[][] buckets = t.buckets.clone();
+            buckets[i] = newBucket;
+            table = new Table(t.predicates, buckets, t.size + 1);
+        }
+    }
+
+    private static int indexOf(Node[] predicates, int length, Node predicate) {
+        for (int i = 0; i < length; i++) {
+            if (predicates[i] == predicate || predicates[i].equals(predicate)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
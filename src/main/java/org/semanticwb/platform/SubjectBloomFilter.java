@@ -0,0 +1,145 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the subject URIs of a {@link SemanticModel}.
+ * <p>
+ * A negative answer means the URI is not a subject of the model, a positive answer means it may be.
+ * URIs can be added concurrently, removed subjects stay in the filter and only affect its false positive rate.
+ *
+ * @author javier.solis.g
+ */
+final class SubjectBloomFilter {
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+    private final long capacity;
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Creates a filter.
+     *
+     * @param expected expected number of URIs
+     * @param fpp      desired false positive probability
+     */
+    SubjectBloomFilter(long expected, double fpp) {
+        capacity = Math.max(1, expected);
+        long m = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        long words = Math.max(1, (m + 63) >>> 6);
+        if (words > Integer.MAX_VALUE) {
+            words = Integer.MAX_VALUE;
+        }
+        bits = new AtomicLongArray((int) words);
+        numBits = words << 6;
+        numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+    }
+
+    /**
+     * Adds a URI to the filter.
+     *
+     * @param uri the URI, null values are ignored.
+     */
+    void put(String uri) {
+        if (uri == null) {
+            return;
+        }
+        long hash = hash(uri);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old = bits.get(word);
+            while ((old & mask) == 0) {
+                if (bits.compareAndSet(word, old, old | mask)) {
+                    changed = true;
+                    break;
+                }
+                old = bits.get(word);
+            }
+        }
+        if (changed) {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Checks if a URI may be in the filter.
+     *
+     * @param uri the URI
+     * @return false if the URI was never added.
+     */
+    boolean mightContain(String uri) {
+        long hash = hash(uri);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the filter holds more URIs than it was sized for.
+     * @return true if the false positive rate is above the expected one.
+     */
+    boolean isSaturated() {
+        return count.get() > capacity;
+    }
+
+    /**
+     * Gets the approximate number of URIs added.
+     * @return number of URIs.
+     */
+    long size() {
+        return count.get();
+    }
+
+    private long index(int combined) {
+        return (combined & 0x7fffffffL) % numBits;
+    }
+
+    /**
+     * 64 bit FNV-1a hash with a final mix.
+     */
+    private static long hash(String uri) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < uri.length(); i++) {
+            h ^= uri.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import org.semanticwb.Logger;
+import org.semanticwb.SWBUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoized table of the observers of each change of the {@link SemanticMgr}.
+ * <p>
+ * Changes are keyed by class, property and action; each entry holds the model observers, the observers of the
+ * class and of the property, and the {@link SemanticEventBus} subscriptions matching the key (including the
+ * subscriptions to superclasses). Entries are built the first time a key is notified and the whole table is
+ * dropped when an observer is registered or removed, or when the vocabulary changes.
+ *
+ * @author javier.solis.g
+ */
+final class SubscriptionIndex {
+    private static final Logger LOG = SWBUtils.getLogger(SubscriptionIndex.class);
+
+    /** Incremented on every change of the observers or the vocabulary. */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private static final SemanticObserver[] NO_OBSERVERS = new SemanticObserver[0];
+    private static final SemanticEventBus.Subscription[] NO_SUBSCRIPTIONS = new SemanticEventBus.Subscription[0];
+    private static final Entry EMPTY = new Entry(NO_OBSERVERS, NO_SUBSCRIPTIONS);
+
+    private final List<SemanticObserver> modelObservers;
+    private final SemanticEventBus eventBus;
+    private volatile Table table = new Table(-1);
+
+    /**
+     * Entries built for a generation.
+     */
+    private static final class Table {
+        final long generation;
+        final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+        Table(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    private static final class Key {
+        final SemanticClass cls;
+        final Object prop;
+        final String action;
+        final int hash;
+
+        Key(SemanticClass cls, Object prop, String action) {
+            this.cls = cls;
+            this.prop = prop;
+            this.action = action;
+            int h = cls != null ? cls.hashCode() : 0;
+            h = 31 * h + (prop != null ? prop.hashCode() : 0);
+            this.hash = 31 * h + (action != null ? action.hashCode() : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return cls == k.cls && prop == k.prop && (action == null ? k.action == null : action.equals(k.action));
+        }
+    }
+
+    /**
+     * Observers of a change.
+     */
+    static final class Entry {
+        private final SemanticObserver[] observers;
+        private final SemanticEventBus.Subscription[] subscriptions;
+
+        Entry(SemanticObserver[] observers, SemanticEventBus.Subscription[] subscriptions) {
+            this.observers = observers;
+            this.subscriptions = subscriptions;
+        }
+
+        /**
+         * Calls the observers in registration order and dispatches the change to the subscriptions.
+         */
+        void notify(SemanticObject obj, Object prop, String lang, String action) {
+            for (SemanticObserver observer : observers) {
+                try {
+                    observer.notify(obj, prop, lang, action);
+                } catch (Exception e) {
+                    LOG.error(e);
+                }
+            }
+            if (subscriptions.length > 0) {
+                SemanticEventBus.Event event = new SemanticEventBus.Event(obj, prop, lang, action);
+                for (SemanticEventBus.Subscription subscription : subscriptions) {
+                    subscription.dispatch(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the index.
+     *
+     * @param modelObservers observers of all the changes
+     * @param eventBus       the event bus
+     */
+    SubscriptionIndex(List<SemanticObserver> modelObservers, SemanticEventBus eventBus) {
+        this.modelObservers = modelObservers;
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Drops the entries of all the indexes, called when observers or the vocabulary change.
+     */
+    static void invalidate() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Gets the observers of a change.
+     *
+     * @param cls    class of the changed object
+     * @param prop   the changed property
+     * @param action the action
+     * @return the observers.
+     */
+    Entry get(SemanticClass cls, Object prop, String action) {
+        long generation = GENERATION.get();
+        Table t = table;
+        if (t.generation != generation) {
+            t = new Table(generation);
+            table = t;
+        }
+        //Only properties have observers, other values are changes of the whole object
+        Key key = new Key(cls, prop instanceof SemanticProperty ? prop : null, action);
+        Entry ret = t.entries.get(key);
+        if (ret == null) {
+            ret = build(cls, key.prop, action);
+            Entry old = t.entries.putIfAbsent(key, ret);
+            if (old != null) {
+                ret = old;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the number of memoized entries.
+     * @return number of entries.
+     */
+    int size() {
+        return table.entries.size();
+    }
+
+    private Entry build(SemanticClass cls, Object prop, String action) {
+        List<SemanticObserver> observers = new ArrayList<>(modelObservers);
+        if (cls != null) {
+            observers.addAll(cls.getObservers());
+        }
+        if (prop != null) {
+            observers.addAll(((SemanticProperty) prop).getObservers());
+        }
+        List<SemanticEventBus.Subscription> subscriptions = new ArrayList<>();
+        for (SemanticEventBus.Subscription subscription : eventBus.getSubscriptions()) {
+            if (subscription.matches(cls, prop, action)) {
+                subscriptions.add(subscription);
+            }
+        }
+        if (observers.isEmpty() && subscriptions.isEmpty()) {
+            return EMPTY;
+        }
+        return new Entry(observers.toArray(NO_OBSERVERS), subscriptions.toArray(NO_SUBSCRIPTIONS));
+    }
+}
@@ -63,6 +63,22 @@ public interface AbstractStore {
      */
     Iterator<String> listModelNames();
 
+    /**
+     * Checks if a model with matching <code>name</code> exists in store.
+     * Implementations should answer from a cached registry instead of querying the store.
+     * @param name Model name
+     * @return true if the model exists.
+     */
+    default boolean hasModel(String name) {
+        Iterator<String> it = listModelNames();
+        while (it.hasNext()) {
+            if (it.next().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Closes store.
      */
@@ -74,4 +90,11 @@ public interface AbstractStore {
      * @return DataSet
      */
     Dataset getDataset(String name);
+
+    /**
+     * Reloads the names of the models from the store, for models created or removed by other nodes of a cluster.
+     * Stores used by a single node do not need to implement it.
+     */
+    default void refreshModelNames() {
+    }
 }
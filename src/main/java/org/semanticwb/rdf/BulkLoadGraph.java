@@ -0,0 +1,121 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.rdf;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write only view of a {@link Graph} used to bulk load RDF files.
+ * <p>
+ * Added triples are buffered and sent to the bulk update handler of the target graph in batches,
+ * RDB graphs store each batch with JDBC batch inserts instead of one round trip per triple.
+ * Reads flush the pending triples and are delegated to the target graph.
+ *
+ * @author javier.solis.g
+ */
+public class BulkLoadGraph extends GraphBase {
+    private final Graph target;
+    private final int batchSize;
+    private List<Triple> buffer;
+    private long count = 0;
+
+    /**
+     * Creates a bulk load view of a graph.
+     *
+     * @param target    graph to load
+     * @param batchSize triples sent to the target graph at once
+     */
+    public BulkLoadGraph(Graph target, int batchSize) {
+        this.target = target;
+        this.batchSize = Math.max(1, batchSize);
+        this.buffer = new ArrayList<>(this.batchSize);
+    }
+
+    @Override
+    public void performAdd(Triple t) {
+        buffer.add(t);
+        if (buffer.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void performDelete(Triple t) {
+        flush();
+        target.delete(t);
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m) {
+        flush();
+        return target.find(m);
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        flush();
+        return target.size();
+    }
+
+    @Override
+    protected PrefixMapping createPrefixMapping() {
+        return target.getPrefixMapping();
+    }
+
+    /**
+     * Sends the buffered triples to the target graph.
+     */
+    public void flush() {
+        if (!buffer.isEmpty()) {
+            List<Triple> batch = buffer;
+            buffer = new ArrayList<>(batchSize);
+            target.getBulkUpdateHandler().add(batch);
+            count += batch.size();
+        }
+    }
+
+    /**
+     * Flushes the buffered triples, the target graph is not closed.
+     */
+    @Override
+    public void close() {
+        flush();
+        super.close();
+    }
+
+    /**
+     * Gets the number of triples sent to the target graph.
+     * @return number of triples.
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.rdf;
+
+import com.hp.hpl.jena.rdf.model.Model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registry of the named models of an {@link AbstractStore} and of their opened handles.
+ * <p>
+ * Names are read from the store once and then kept up to date by the store when models are created and removed,
+ * so looking up a model never queries the store.
+ *
+ * @author javier.solis.g
+ */
+final class ModelRegistry {
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Model> models = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the registered names with the names of the store.
+     *
+     * @param it names of the store
+     */
+    void refresh(Iterator<String> it) {
+        Set<String> current = ConcurrentHashMap.newKeySet();
+        while (it.hasNext()) {
+            current.add(it.next());
+        }
+        names.retainAll(current);
+        names.addAll(current);
+    }
+
+    /**
+     * Checks if a model exists.
+     *
+     * @param name model name
+     * @return true if the model exists.
+     */
+    boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Gets the handle of a model, opening and registering it the first time.
+     *
+     * @param name   model name
+     * @param opener opens the model
+     * @return the model.
+     */
+    Model open(String name, Function<String, Model> opener) {
+        Model ret = models.get(name);
+        if (ret == null) {
+            ret = models.computeIfAbsent(name, opener);
+        }
+        names.add(name);
+        return ret;
+    }
+
+    /**
+     * Unregisters a model and its handle.
+     *
+     * @param name model name
+     */
+    void remove(String name) {
+        names.remove(name);
+        models.remove(name);
+    }
+
+    /**
+     * Gets the handle of a model if it is opened.
+     *
+     * @param name model name
+     * @return the model or null.
+     */
+    Model get(String name) {
+        return models.get(name);
+    }
+
+    /**
+     * Gets a snapshot of the registered names.
+     * @return iterator of names.
+     */
+    Iterator<String> names() {
+        return new ArrayList<>(names).iterator();
+    }
+
+    /**
+     * Unregisters all models.
+     */
+    void clear() {
+        names.clear();
+        models.clear();
+    }
+}
@@ -43,6 +43,10 @@ public class RDBStore implements AbstractStore {
     private static Logger LOG = SWBUtils.getLogger(RDBStore.class);
     private ModelMaker maker;
     private IDBConnection conn;
+    /**
+     * The registry of named models.
+     */
+    private final ModelRegistry registry = new ModelRegistry();
 
     public void init() {
         DBConnectionPool pool = SWBUtils.DB.getDefaultPool();
@@ -83,6 +87,7 @@ public class RDBStore implements AbstractStore {
             conn.getDriver().setDoDuplicateCheck(false);
 
             maker = ModelFactory.createModelRDBMaker(conn);
+            registry.refresh(maker.listModels());
         } else {
             LOG.error("Error initializing RDBStore: Invalid driver");
         }
@@ -90,21 +95,39 @@ public class RDBStore implements AbstractStore {
 
     public void removeModel(String name) {
         maker.removeModel(name);
+        registry.remove(name);
+        //Long objects of the model may be deleted and their IDs reused
+        NodeDictionaryCache.getInstance().invalidateCluster();
     }
 
     public Model loadModel(String name) {
-        Model ret = maker.openModel(name);
-        ((ModelRDB) (ret)).setDoFastpath(false);
-        ((ModelRDB) (ret)).setQueryOnlyAsserted(true);
-        return ret;
+        return registry.open(name, k -> {
+            Model ret = maker.openModel(k);
+            ((ModelRDB) (ret)).setDoFastpath(false);
+            ((ModelRDB) (ret)).setQueryOnlyAsserted(true);
+            return ret;
+        });
     }
 
     public Iterator<String> listModelNames() {
-        return maker.listModels();
+        return registry.names();
+    }
+
+    public boolean hasModel(String name) {
+        return registry.contains(name);
+    }
+
+    /**
+     * Reloads the names of the models from the database, for models created by other nodes.
+     */
+    @Override
+    public void refreshModelNames() {
+        registry.refresh(maker.listModels());
     }
 
     public void close() {
         maker.close();
+        registry.clear();
         if (conn != null) {
             try {
                 conn.close();
@@ -119,7 +142,7 @@ public class RDBStore implements AbstractStore {
     }
 
     public Model getModel(String name) {
-        if (maker.hasModel(name)) {
+        if (hasModel(name)) {
             return loadModel(name);
         }
         return null;
@@ -24,21 +24,48 @@ package org.semanticwb.rdf;
 
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.graph.TripleMatch;
 import com.hp.hpl.jena.graph.impl.GraphBase;
-import com.hp.hpl.jena.query.Query;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
-import com.hp.hpl.jena.query.QueryFactory;
-import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.sparql.engine.http.QueryEngineHTTP;
+import com.hp.hpl.jena.sparql.util.FmtUtils;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NiceIterator;
+import com.hp.hpl.jena.util.iterator.WrappedIterator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * The Class RemoteGraph.
+ * Graph backed by a remote SPARQL endpoint.
+ * <p>
+ * Each find is sent as a SELECT query and its results are streamed through the returned iterator. Optionally,
+ * patterns with a bound subject or object are kept in an LRU cache with a time to live, concurrent finds of the
+ * same pattern share a single query, and the triples of several subjects are requested with a single VALUES
+ * query (see {@link SubjectBatchGraph}).
  *
  * @author javier.solis
  */
-public class RemoteGraph extends GraphBase implements Graph {
+public class RemoteGraph extends GraphBase implements Graph, SubjectBatchGraph {
+
+    /**
+     * Max subjects of a VALUES query.
+     */
+    private static final int BATCH_SIZE = 100;
 
     /**
      * The uri.
@@ -46,9 +73,42 @@ public class RemoteGraph extends GraphBase implements Graph {
     private String uri;
 
     /**
-     * The query all.
+     * Max cached patterns, 0 disables the cache.
+     */
+    private final int cacheSize;
+
+    /**
+     * Time to live of the cached patterns in milliseconds.
+     */
+    private final long cacheTTL;
+
+    /**
+     * Cached patterns in access order.
+     */
+    private final LinkedHashMap<Triple, CacheEntry> cache;
+
+    /**
+     * Queries running per pattern, shared by concurrent finds.
      */
-    private boolean queryAll = false;
+    private final ConcurrentHashMap<Triple, CompletableFuture<List<Triple>>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+
+    /**
+     * Triples of a cached pattern.
+     */
+    private static final class CacheEntry {
+        final List<Triple> triples;
+        final long expires;
+
+        CacheEntry(List<Triple> triples, long expires) {
+            this.triples = triples;
+            this.expires = expires;
+        }
+    }
 
     /**
      * Cronstruct a Remote Graph.
@@ -56,18 +116,38 @@ public class RemoteGraph extends GraphBase implements Graph {
      * @param uri for the Remote Sparql endpoint
      */
     public RemoteGraph(String uri) {
-        this(uri, false);
+        this(uri, 0, 0);
     }
 
     /**
      * Cronstruct a Remote Graph.
      *
      * @param uri      for the Remote Sparql endpoint
-     * @param queryAll support for query all triples (default false)
+     * @param queryAll ignored, all patterns are sent to the endpoint
+     * @deprecated use {@link #RemoteGraph(String)}
      */
+    @Deprecated
     public RemoteGraph(String uri, boolean queryAll) {
+        this(uri);
+    }
+
+    /**
+     * Cronstruct a Remote Graph with a pattern cache.
+     *
+     * @param uri       for the Remote Sparql endpoint
+     * @param cacheSize max cached patterns, 0 disables the cache
+     * @param cacheTTL  time to live of the cached patterns in milliseconds
+     */
+    public RemoteGraph(String uri, int cacheSize, long cacheTTL) {
         this.uri = uri;
-        this.queryAll = queryAll;
+        this.cacheSize = Math.max(0, cacheSize);
+        this.cacheTTL = cacheTTL;
+        this.cache = new LinkedHashMap<Triple, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Triple, CacheEntry> eldest) {
+                return size() > RemoteGraph.this.cacheSize;
+            }
+        };
     }
 
     /**
@@ -77,14 +157,9 @@ public class RemoteGraph extends GraphBase implements Graph {
      * @return the node string
      */
     private String getNodeString(Node n) {
-        if (n.isURI()) {
-            return "<" + n.getURI() + ">";
-        } else {
-            return n.toString();
-        }
+        return FmtUtils.stringForNode(n);
     }
 
-
     /**
      * Answer an iterator over all the triples held in this graph's non-reified triple store
      * that match <code>m</code>.
@@ -94,31 +169,309 @@ public class RemoteGraph extends GraphBase implements Graph {
      */
     @Override
     protected ExtendedIterator graphBaseFind(TripleMatch m) {
-        String sub = "$sub";
-        String pre = "$pre";
-        String obj = "$obj";
+        Triple pattern = Triple.createMatch(m.getMatchSubject(), m.getMatchPredicate(), m.getMatchObject());
+        if (cacheSize > 0 && (m.getMatchSubject() != null || m.getMatchObject() != null)) {
+            return WrappedIterator.create(find(pattern).iterator());
+        }
+        return select(pattern, null);
+    }
 
-        if (m.getMatchSubject() != null) {
-            sub = getNodeString(m.getMatchSubject());
+    /**
+     * Finds all triples having one of the given subjects, cached subjects are not requested again.
+     * @param subjects subject nodes
+     * @return Triple iterator
+     */
+    @Override
+    public ExtendedIterator<Triple> findBySubjects(Collection<Node> subjects) {
+        List<Node> pending = new ArrayList<>(subjects.size());
+        List<Triple> found = new ArrayList<>();
+        for (Node subject : subjects) {
+            List<Triple> cached = cacheSize > 0 ? getCached(Triple.createMatch(subject, null, null)) : null;
+            if (cached != null) {
+                hits.incrementAndGet();
+                found.addAll(cached);
+            } else {
+                pending.add(subject);
+            }
         }
 
-        if (m.getMatchPredicate() != null) {
-            pre = getNodeString(m.getMatchPredicate());
+        List<List<Node>> batches = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i += BATCH_SIZE) {
+            batches.add(pending.subList(i, Math.min(pending.size(), i + BATCH_SIZE)));
+        }
+        if (cacheSize == 0) {
+            return new BatchIterator(batches);
         }
 
-        if (m.getMatchObject() != null) {
-            obj = getNodeString(m.getMatchObject());
+        //Results are grouped to cache each subject
+        for (List<Node> batch : batches) {
+            misses.addAndGet(batch.size());
+            Map<Node, List<Triple>> bySubject = new HashMap<>();
+            for (Node subject : batch) {
+                bySubject.put(subject, new ArrayList<Triple>());
+            }
+            ExtendedIterator<Triple> it = select(Triple.createMatch(null, null, null), batch);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    List<Triple> list = bySubject.get(t.getSubject());
+                    if (list != null) {
+                        list.add(t);
+                    }
+                }
+            } finally {
+                it.close();
+            }
+            for (Map.Entry<Node, List<Triple>> entry : bySubject.entrySet()) {
+                putCached(Triple.createMatch(entry.getKey(), null, null), entry.getValue());
+                found.addAll(entry.getValue());
+            }
+        }
+        return WrappedIterator.create(found.iterator());
+    }
+
+    /**
+     * Gets the triples of a pattern from the cache or from a query shared with concurrent finds.
+     */
+    private List<Triple> find(Triple pattern) {
+        List<Triple> ret = getCached(pattern);
+        if (ret != null) {
+            hits.incrementAndGet();
+            return ret;
         }
 
-        String queryString =
-                "CONSTRUCT { " + sub + " " + pre + " " + obj + " }" +
-                        "WHERE  " +
-                        "{" + sub + " " + pre + " " + obj + "}";
+        CompletableFuture<List<Triple>> future = new CompletableFuture<>();
+        CompletableFuture<List<Triple>> running = inflight.putIfAbsent(pattern, future);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            ret = new ArrayList<>();
+            ExtendedIterator<Triple> it = select(pattern, null);
+            try {
+                while (it.hasNext()) {
+                    ret.add(it.next());
+                }
+            } finally {
+                it.close();
+            }
+            ret = putCached(pattern, ret);
+            future.complete(ret);
+            return ret;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(pattern, future);
+        }
+    }
+
+    private List<Triple> getCached(Triple pattern) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(pattern);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires < System.currentTimeMillis()) {
+                cache.remove(pattern);
+                return null;
+            }
+            return entry.triples;
+        }
+    }
+
+    private List<Triple> putCached(Triple pattern, List<Triple> triples) {
+        List<Triple> ret = Collections.unmodifiableList(triples);
+        synchronized (cache) {
+            cache.put(pattern, new CacheEntry(ret, System.currentTimeMillis() + cacheTTL));
+        }
+        return ret;
+    }
+
+    /**
+     * Sends a SELECT query of a pattern, optionally restricting the subject to a list of values.
+     */
+    private ExtendedIterator<Triple> select(Triple pattern, List<Node> subjects) {
+        Node s = pattern.getMatchSubject();
+        Node p = pattern.getMatchPredicate();
+        Node o = pattern.getMatchObject();
 
-        Query query = QueryFactory.create(queryString);
-        QueryExecution qexec = QueryExecutionFactory.sparqlService(uri, query);
-        Model model = qexec.execConstruct();
-        return model.getGraph().find(m);
+        StringBuilder query = new StringBuilder("SELECT * WHERE { ");
+        if (subjects != null) {
+            query.append("VALUES ?s {");
+            for (Node subject : subjects) {
+                query.append(' ').append(getNodeString(subject));
+            }
+            query.append(" } ");
+        }
+        query.append(s != null ? getNodeString(s) : "?s").append(' ')
+                .append(p != null ? getNodeString(p) : "?p").append(' ')
+                .append(o != null ? getNodeString(o) : "?o").append(" }");
+
+        queries.incrementAndGet();
+        //The query is sent as is, VALUES is not known by the local parser
+        QueryEngineHTTP qexec = new QueryEngineHTTP(uri, query.toString());
+        try {
+            return new ResultIterator(qexec, qexec.execSelect(), pattern);
+        } catch (RuntimeException e) {
+            qexec.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Streams the solutions of a SELECT query as triples, the query is closed once consumed.
+     */
+    private static final class ResultIterator extends NiceIterator<Triple> {
+        private final QueryEngineHTTP qexec;
+        private final ResultSet results;
+        private final Triple pattern;
+        private Triple next = null;
+        private boolean closed = false;
+
+        ResultIterator(QueryEngineHTTP qexec, ResultSet results, Triple pattern) {
+            this.qexec = qexec;
+            this.results = results;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !closed) {
+                if (!results.hasNext()) {
+                    close();
+                    break;
+                }
+                QuerySolution sol = results.nextSolution();
+                Triple t = Triple.create(node(sol, "s", pattern.getMatchSubject()),
+                        node(sol, "p", pattern.getMatchPredicate()), node(sol, "o", pattern.getMatchObject()));
+                //Endpoints may match literals by value
+                if (pattern.matches(t)) {
+                    next = t;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Triple next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Triple ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                qexec.close();
+            }
+        }
+
+        private static Node node(QuerySolution sol, String var, Node bound) {
+            if (bound != null) {
+                return bound;
+            }
+            RDFNode node = sol.get(var);
+            return node != null ? node.asNode() : Node.ANY;
+        }
+    }
+
+    /**
+     * Runs the VALUES queries of a list of subject batches one after another as the iterator is consumed.
+     */
+    private final class BatchIterator extends NiceIterator<Triple> {
+        private final Iterator<List<Node>> batches;
+        private ExtendedIterator<Triple> current = null;
+
+        BatchIterator(List<List<Node>> batches) {
+            this.batches = batches.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+                if (!batches.hasNext()) {
+                    return false;
+                }
+                current = select(Triple.createMatch(null, null, null), batches.next());
+            }
+            return true;
+        }
+
+        @Override
+        public Triple next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Drops all cached patterns.
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Gets the number of finds answered from the cache.
+     * @return number of finds.
+     */
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of finds not found in the cache, always 0 if the cache is disabled.
+     * @return number of finds.
+     */
+    public long getCacheMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of finds that waited for the same query of another thread.
+     * @return number of finds.
+     */
+    public long getCoalescedFinds() {
+        return coalesced.get();
+    }
+
+    /**
+     * Gets the number of queries sent to the endpoint.
+     * @return number of queries.
+     */
+    public long getRemoteQueries() {
+        return queries.get();
     }
 
     /**
@@ -47,6 +47,10 @@ public class SDBStore implements AbstractStore {
      * The Dataset
      */
     private Dataset set;
+    /**
+     * The registry of named models.
+     */
+    private final ModelRegistry registry = new ModelRegistry();
 
     public void init() {
         DBConnectionPool pool = SWBUtils.DB.getDefaultPool();
@@ -69,6 +73,7 @@ public class SDBStore implements AbstractStore {
             }
 
             set = SDBFactory.connectDataset(store);
+            registry.refresh(set.listNames());
         } catch (Exception e) {
             LOG.error(e);
         }
@@ -79,29 +84,36 @@ public class SDBStore implements AbstractStore {
         if (model != null) {
             model.removeAll();
         }
+        registry.remove(name);
     }
 
     public Model loadModel(String name) {
-        return set.getNamedModel(name);
+        return registry.open(name, set::getNamedModel);
     }
 
     public Iterator<String> listModelNames() {
-        return set.listNames();
+        return registry.names();
+    }
+
+    public boolean hasModel(String name) {
+        return registry.contains(name);
     }
 
     public Model getModel(String name) {
-        Iterator<String> it = listModelNames();
-        while (it.hasNext()) {
-            String mname = it.next();
-            if (mname.equals(name)) {
-                return loadModel(name);
-            }
-        }
-        return null;
+        return hasModel(name) ? loadModel(name) : null;
+    }
+
+    /**
+     * Reloads the names of the models from the database, for models created by other nodes.
+     */
+    @Override
+    public void refreshModelNames() {
+        registry.refresh(set.listNames());
     }
 
     public void close() {
         set.close();
+        registry.clear();
     }
 
     public Dataset getDataset(String defaultName) {
@@ -22,98 +22,317 @@
 package org.semanticwb.rdf;
 
 import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.tdb.TDB;
 import com.hp.hpl.jena.tdb.TDBFactory;
 import org.semanticwb.Logger;
 import org.semanticwb.SWBPlatform;
 import org.semanticwb.SWBUtils;
 
-import java.util.ConcurrentModificationException;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implementation of a single instance transactional TripleStore.
+ * <p>
+ * Changes are tracked per named model and committed in groups by a single committer thread, see {@link Durability}.
+ * Changes made through the {@link Dataset} are not tracked, all the models are also committed every
+ * swb/tdbSyncInterval milliseconds.
  * @author jei
  */
 public class TDBStore implements AbstractStore {
     private static final Logger LOG = SWBUtils.getLogger(TDBStore.class);
 
+    /**
+     * When changes are committed.
+     * <ul>
+     * <li>GROUP: when swb/tdbCommitBatch changes accumulate or swb/tdbCommitInterval milliseconds after the first
+     * uncommitted change, whatever comes first.</li>
+     * <li>DEFERRED: every swb/tdbCommitInterval milliseconds, if there are changes.</li>
+     * </ul>
+     */
+    public enum Durability {
+        GROUP,
+        DEFERRED
+    }
+
     /**
      * The Dataset
      */
     private Dataset set;
     /**
-     * The timer.
+     * The registry of named models, each loaded model tracks its changes.
+     */
+    private final ModelRegistry registry = new ModelRegistry();
+    /**
+     * Handles of removed models, kept until the committer commits their removal.
+     */
+    private final ConcurrentHashMap<String, Model> removed = new ConcurrentHashMap<>();
+    /**
+     * Uncommitted changes per model.
      */
-    private Timer timer;
+    private final ConcurrentHashMap<String, AtomicLong> dirty = new ConcurrentHashMap<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean urgent = new AtomicBoolean();
+    /**
+     * The committer, the only thread committing models while the store is open.
+     */
+    private volatile ScheduledExecutorService committer;
+    private Durability durability;
+    private long commitBatch;
+    private long commitInterval;
+    private long syncInterval;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong committedChanges = new AtomicLong();
+    private final AtomicLong commitTime = new AtomicLong();
+    private final AtomicLong maxCommitTime = new AtomicLong();
+    private volatile long lastBatch = 0;
 
     public void init() {
         LOG.info("TDB Detected...," + SWBPlatform.createInstance().getPlatformWorkPath() + "/data");
         TDB.getContext().set(TDB.symUnionDefaultGraph, true);
         set = TDBFactory.createDataset(SWBPlatform.createInstance().getPlatformWorkPath() + "/data");
+        registry.refresh(set.listNames());
 
-        timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                commit();
-            }
-        }, 60000, 30000);
+        durability = Durability.valueOf(SWBPlatform.getEnv("swb/tdbDurability", "GROUP").toUpperCase());
+        commitBatch = Long.parseLong(SWBPlatform.getEnv("swb/tdbCommitBatch", "1000"));
+        commitInterval = Long.parseLong(SWBPlatform.getEnv("swb/tdbCommitInterval", "1000"));
+        syncInterval = Long.parseLong(SWBPlatform.getEnv("swb/tdbSyncInterval", "30000"));
+        committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TDBStoreCommitter");
+            t.setDaemon(true);
+            return t;
+        });
+        if (durability == Durability.DEFERRED) {
+            committer.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+        }
+        if (syncInterval > 0) {
+            committer.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+        LOG.event("TDBStore durability:" + durability + " batch:" + commitBatch + " interval:" + commitInterval
+                + "ms sync:" + syncInterval + "ms");
     }
 
     public void removeModel(String name) {
         Model model = loadModel(name);
         if (model != null) {
             model.removeAll();
+            removed.put(name, model);
+            changed(name, 1);
         }
+        registry.remove(name);
     }
 
     public Model loadModel(String name) {
-        return set.getNamedModel(name);
+        return registry.open(name, k -> {
+            Model model = set.getNamedModel(k);
+            model.register(new StatementListener() {
+                @Override
+                public void addedStatement(Statement s) {
+                    changed(k, 1);
+                }
+
+                @Override
+                public void removedStatement(Statement s) {
+                    changed(k, 1);
+                }
+            });
+            return model;
+        });
     }
 
     public Iterator<String> listModelNames() {
-        return set.listNames();
+        return registry.names();
+    }
+
+    public boolean hasModel(String name) {
+        return registry.contains(name);
     }
 
     public Model getModel(String name) {
-        Iterator<String> it = listModelNames();
-        while (it.hasNext()) {
-            String mname = it.next();
-            if (mname.equals(name)) {
-                return loadModel(name);
+        return hasModel(name) ? loadModel(name) : null;
+    }
+
+    /**
+     * Registers changes of a model and schedules their commit.
+     */
+    private void changed(String name, long count) {
+        AtomicLong counter = dirty.get(name);
+        if (counter == null) {
+            counter = dirty.computeIfAbsent(name, k -> new AtomicLong());
+        }
+        counter.addAndGet(count);
+        long total = pending.addAndGet(count);
+        ScheduledExecutorService exec = committer;
+        if (durability == Durability.GROUP && exec != null) {
+            try {
+                if (total >= commitBatch) {
+                    if (urgent.compareAndSet(false, true)) {
+                        exec.execute(this::commit);
+                    }
+                } else if (scheduled.compareAndSet(false, true)) {
+                    exec.schedule(this::commit, commitInterval, TimeUnit.MILLISECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                //Closing, close commits the pending changes
             }
         }
-        return null;
     }
 
     /**
-     * Commit all models.
+     * Commits the models with changes, runs on the committer thread or on close once the committer stopped.
      */
     private void commit() {
-        LOG.trace("ServerMgr.Commit()");
+        scheduled.set(false);
+        urgent.set(false);
+        long changes = pending.getAndSet(0);
+        if (changes == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        int count = 0;
+        for (Map.Entry<String, AtomicLong> entry : dirty.entrySet()) {
+            if (entry.getValue().getAndSet(0) > 0) {
+                Model model = registry.get(entry.getKey());
+                Model gone = removed.remove(entry.getKey());
+                if (model == null) {
+                    model = gone;
+                }
+                if (model != null) {
+                    try {
+                        model.commit();
+                        count++;
+                    } catch (Exception e) {
+                        LOG.error("Error committing model changes:" + entry.getKey(), e);
+                    }
+                }
+            }
+        }
+        long time = (System.nanoTime() - start) / 1000;
+        commits.incrementAndGet();
+        committedChanges.addAndGet(changes);
+        commitTime.addAndGet(time);
+        long max = maxCommitTime.get();
+        while (time > max && !maxCommitTime.compareAndSet(max, time)) {
+            max = maxCommitTime.get();
+        }
+        lastBatch = changes;
+        LOG.trace("TDBStore commit models:" + count + " changes:" + changes + " time:" + time + "us");
+    }
+
+    /**
+     * Commits all the models of the dataset, including changes made through the dataset that the
+     * model listeners do not see. Runs on the committer thread or on close once the committer stopped.
+     */
+    private void sync() {
+        List<String> names = new ArrayList<>();
         try {
-            Iterator<String> it = listModelNames();
+            Iterator<String> it = set.listNames();
             while (it.hasNext()) {
-                Model model = loadModel(it.next());
-                model.commit();
+                names.add(it.next());
+            }
+        } catch (Exception e) {
+            LOG.error("Error listing models to commit", e);
+        }
+        for (String name : names) {
+            Model model = registry.get(name);
+            try {
+                (model != null ? model : set.getNamedModel(name)).commit();
+            } catch (Exception e) {
+                LOG.error("Error committing model changes:" + name, e);
             }
-        } catch (ConcurrentModificationException noe) {
-            LOG.error("Error committing model changes", noe);
         }
     }
 
     public void close() {
-        timer.cancel();
-        timer = null;
+        committer.shutdown();
+        try {
+            if (!committer.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("TDBStore committer did not stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        committer = null;
         commit();
+        sync();
         set.close();
+        registry.clear();
+        removed.clear();
     }
 
     public Dataset getDataset(String defaultName) {
         return set;
     }
+
+    /**
+     * Gets the durability mode.
+     * @return the mode.
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Gets the number of group commits.
+     * @return number of commits.
+     */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    /**
+     * Gets the number of changes not yet committed.
+     * @return number of changes.
+     */
+    public long getPendingChanges() {
+        return pending.get();
+    }
+
+    /**
+     * Gets the average time of a group commit.
+     * @return time in microseconds.
+     */
+    public long getAverageCommitTime() {
+        long n = commits.get();
+        return n > 0 ? commitTime.get() / n : 0;
+    }
+
+    /**
+     * Gets the longest group commit.
+     * @return time in microseconds.
+     */
+    public long getMaxCommitTime() {
+        return maxCommitTime.get();
+    }
+
+    /**
+     * Gets the average number of changes of a group commit.
+     * @return number of changes.
+     */
+    public long getAverageBatchSize() {
+        long n = commits.get();
+        return n > 0 ? committedChanges.get() / n : 0;
+    }
+
+    /**
+     * Gets the number of changes of the last group commit.
+     * @return number of changes.
+     */
+    public long getLastBatchSize() {
+        return lastBatch;
+    }
 }
@@ -0,0 +1,224 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package com.hp.hpl.jena.sdb.sql;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the streamed queries of {@link SDBConnection_SWB} over a fake JDBC driver that generates its rows.
+ *
+ * @author javier.solis.g
+ */
+public class SDBConnection_SWBTest {
+
+    /**
+     * Fake database, each query returns the numbers from 1 to rows.
+     */
+    private static final class Database {
+        private final String product;
+        private final long rows;
+        private boolean autoCommit = true;
+        private int fetchSize = 0;
+        private int resultSetType = 0;
+        private boolean cancelled = false;
+        private boolean committed = false;
+        private int openConnections = 0;
+        private long row = 0;
+
+        Database(String product, long rows) {
+            this.product = product;
+            this.rows = rows;
+        }
+
+        Connection connect() {
+            openConnections++;
+            return proxy(Connection.class, (name, args) -> {
+                switch (name) {
+                    case "getMetaData":
+                        return proxy(DatabaseMetaData.class, (n, a) -> "getDatabaseProductName".equals(n) ? product : null);
+                    case "getAutoCommit":
+                        return autoCommit;
+                    case "setAutoCommit":
+                        autoCommit = (Boolean) args[0];
+                        return null;
+                    case "commit":
+                        committed = true;
+                        return null;
+                    case "createStatement":
+                        resultSetType = (Integer) args[0];
+                        return statement();
+                    case "close":
+                        openConnections--;
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private Statement statement() {
+            return proxy(Statement.class, (name, args) -> {
+                switch (name) {
+                    case "setFetchSize":
+                        fetchSize = (Integer) args[0];
+                        return null;
+                    case "executeQuery":
+                        row = 0;
+                        return resultSet();
+                    case "cancel":
+                        cancelled = true;
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private ResultSet resultSet() {
+            return proxy(ResultSet.class, (name, args) -> {
+                switch (name) {
+                    case "next":
+                        return ++row <= rows;
+                    case "isAfterLast":
+                        return row > rows;
+                    case "getLong":
+                        return row;
+                    default:
+                        return null;
+                }
+            });
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        Object ret = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, m, args) -> {
+            Object value = handler.invoke(m.getName(), args);
+            if (value == null && m.getReturnType() == boolean.class) {
+                return false;
+            }
+            if (value == null && m.getReturnType() == int.class) {
+                return 0;
+            }
+            return value;
+        });
+        return type.cast(ret);
+    }
+
+    private static SDBConnection_SWB connection(Database db) {
+        return new SDBConnection_SWB(db.connect()) {
+            @Override
+            public Connection getPoolConnection() {
+                return db.connect();
+            }
+        };
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Scans ten million rows, the memory used must not grow with the rows read.
+     */
+    @Test
+    public void testMySQLStreaming() throws SQLException {
+        Database db = new Database("MySQL", 10000000);
+        SDBConnection_SWB conn = connection(db);
+        long before = usedMemory();
+        ResultSetJDBC rs = conn.execQuery("SELECT id FROM Nodes");
+        assertEquals(Integer.MIN_VALUE, db.fetchSize);
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, db.resultSetType);
+        long sum = 0;
+        long count = 0;
+        while (rs.get().next()) {
+            sum += rs.get().getLong(1);
+            count++;
+            if (count == 5000000) {
+                assertTrue("Memory grows with the rows read", usedMemory() - before < 16 * 1024 * 1024);
+            }
+        }
+        rs.close();
+        assertEquals(10000000, count);
+        assertEquals(10000000L * 10000001L / 2, sum);
+        assertFalse(db.cancelled);
+        assertEquals(1, db.openConnections);
+    }
+
+    @Test
+    public void testMySQLEarlyAbandon() throws SQLException {
+        Database db = new Database("MySQL", 10000000);
+        SDBConnection_SWB conn = connection(db);
+        ResultSetJDBC rs = conn.execQuery("SELECT id FROM Nodes");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rs.get().next());
+        }
+        rs.close();
+        assertTrue(db.cancelled);
+        assertEquals(1, db.openConnections);
+        rs.close();
+        assertEquals(1, db.openConnections);
+    }
+
+    @Test
+    public void testPostgreSQLCursor() throws SQLException {
+        Database db = new Database("PostgreSQL", 100);
+        SDBConnection_SWB conn = connection(db);
+        ResultSetJDBC rs = conn.execQuery("SELECT id FROM Nodes");
+        assertEquals(1000, db.fetchSize);
+        assertFalse(db.autoCommit);
+        rs.close();
+        assertFalse(db.cancelled);
+        assertTrue(db.committed);
+        assertTrue(db.autoCommit);
+        assertEquals(1, db.openConnections);
+    }
+
+    @Test
+    public void testExplicitFetchSize() throws SQLException {
+        Database db = new Database("MySQL", 100);
+        SDBConnection_SWB conn = connection(db);
+        ResultSetJDBC rs = conn.execQuery("SELECT id FROM Nodes", 50);
+        assertEquals(50, db.fetchSize);
+        assertTrue(rs.get().next());
+        rs.close();
+        assertFalse(db.cancelled);
+        assertEquals(1, db.openConnections);
+    }
+}
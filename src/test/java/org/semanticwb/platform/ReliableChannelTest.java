@@ -0,0 +1,277 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the reliable channel over a loopback network that loses and reorders frames.
+ *
+ * @author javier.solis.g
+ */
+public class ReliableChannelTest {
+    private static final InetAddress LOCALHOST = InetAddress.getLoopbackAddress();
+
+    /**
+     * Frames in flight between the nodes, delivered in random order and dropped with a probability.
+     */
+    private static final class Network {
+        private final Random random = new Random(42);
+        private double loss;
+        private final List<Node> nodes = new ArrayList<>();
+        private final List<Object[]> frames = new ArrayList<>();
+
+        Network(double loss) {
+            this.loss = loss;
+        }
+
+        Node node(int port) {
+            Node ret = new Node(this, port);
+            nodes.add(ret);
+            return ret;
+        }
+
+        synchronized void send(byte[] data, int from, int to) {
+            if (random.nextDouble() >= loss) {
+                frames.add(new Object[]{data, from, to});
+            }
+        }
+
+        void deliver() {
+            List<Object[]> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(frames);
+                frames.clear();
+                Collections.shuffle(batch, random);
+            }
+            for (Object[] frame : batch) {
+                for (Node node : nodes) {
+                    if (node.port == (Integer) frame[2]) {
+                        ByteBuffer buf = ByteBuffer.wrap((byte[]) frame[0]);
+                        assertTrue(ReliableChannel.isFrame(buf));
+                        node.channel.receive(buf, new InetSocketAddress(LOCALHOST, (Integer) frame[1]));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Exchanges the heartbeats sent when the channels start, without loss.
+         */
+        void start() {
+            double saved = loss;
+            loss = 0;
+            for (Node node : nodes) {
+                node.channel.heartbeat();
+            }
+            deliver();
+            loss = saved;
+        }
+
+        /**
+         * Runs the flush, delivery, heartbeat and gap check rounds.
+         */
+        void run(int rounds) {
+            for (int i = 0; i < rounds; i++) {
+                for (Node node : nodes) {
+                    node.channel.flush();
+                }
+                deliver();
+                for (Node node : nodes) {
+                    node.channel.heartbeat();
+                    node.channel.checkGaps();
+                }
+                deliver();
+            }
+        }
+    }
+
+    private static final class Node implements ReliableChannel.Endpoint, ReliableChannel.Transport {
+        private final Network network;
+        private final int port;
+        private final List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        private final ReliableChannel channel;
+
+        Node(Network network, int port) {
+            this.network = network;
+            this.port = port;
+            this.channel = new ReliableChannel(this, this, port, 5, 1000, 0, 60000, 1024);
+        }
+
+        @Override
+        public void incomingMessage(String message, String host) {
+            received.add(message);
+        }
+
+        @Override
+        public void incomingBinary(ByteBuffer data, String host) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            received.add(bytes);
+        }
+
+        @Override
+        public List<InetSocketAddress> getPeerAddresses() {
+            List<InetSocketAddress> ret = new ArrayList<>();
+            for (Node node : network.nodes) {
+                if (node != this) {
+                    ret.add(new InetSocketAddress(LOCALHOST, node.port));
+                }
+            }
+            return ret;
+        }
+
+        @Override
+        public void send(byte[] data, InetSocketAddress address) {
+            network.send(data, port, address.getPort());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testLossAndReorder() {
+        Network network = new Network(0.3);
+        Node a = network.node(1);
+        Node b = network.node(2);
+        network.start();
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String message = "msg|" + i;
+            sent.add(message);
+            a.channel.send(message);
+            if (i % 7 == 0) {
+                network.run(1);
+            }
+        }
+        network.run(100);
+        assertEquals(sent, b.received);
+    }
+
+    @Test
+    public void testLargeMessages() {
+        Network network = new Network(0.2);
+        Node a = network.node(1);
+        Node b = network.node(2);
+        network.start();
+        Random random = new Random(7);
+        char[] chars = new char[200000];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        chars[12345] = 'ñ';
+        String text = new String(chars);
+        byte[] binary = new byte[ReliableChannel.MAX_MESSAGE * 3];
+        random.nextBytes(binary);
+
+        a.channel.send("before");
+        a.channel.send(text);
+        a.channel.sendBinary(binary);
+        a.channel.send("after");
+        network.run(100);
+
+        assertEquals(4, b.received.size());
+        assertEquals("before", b.received.get(0));
+        assertEquals(text, b.received.get(1));
+        assertArrayEquals(binary, (byte[]) b.received.get(2));
+        assertEquals("after", b.received.get(3));
+    }
+
+    @Test
+    public void testJoinMidStream() {
+        Network network = new Network(0);
+        Node a = network.node(1);
+        for (int i = 0; i < 10; i++) {
+            a.channel.send("msg|" + i);
+        }
+        network.run(1);
+        //Messages sent before the node joined are not requested, its state comes from the store
+        Node b = network.node(2);
+        a.channel.send("msg|10");
+        a.channel.flush();
+        synchronized (network) {
+            network.frames.clear();
+        }
+        a.channel.send("msg|11");
+        network.run(10);
+        assertEquals(Collections.singletonList("msg|11"), b.received);
+
+        //Gaps opened after the join are requested
+        a.channel.send("msg|12");
+        a.channel.send("msg|13");
+        a.channel.flush();
+        synchronized (network) {
+            network.frames.clear();
+        }
+        a.channel.send("msg|14");
+        network.run(10);
+        assertEquals(Arrays.asList("msg|11", "msg|12", "msg|13", "msg|14"), b.received);
+    }
+
+    @Test
+    public void testBothDirections() {
+        Network network = new Network(0.3);
+        Node a = network.node(1);
+        Node b = network.node(2);
+        Node c = network.node(3);
+        network.start();
+        for (int i = 0; i < 200; i++) {
+            a.channel.send("a|" + i);
+            b.channel.sendBinary(("b|" + i).getBytes(StandardCharsets.UTF_8));
+            if (i % 5 == 0) {
+                network.run(1);
+            }
+        }
+        network.run(100);
+        assertEquals(400, c.received.size());
+        List<String> fromA = new ArrayList<>();
+        List<String> fromB = new ArrayList<>();
+        for (Object message : c.received) {
+            if (message instanceof String) {
+                fromA.add((String) message);
+            } else {
+                fromB.add(new String((byte[]) message, StandardCharsets.UTF_8));
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals("a|" + i, fromA.get(i));
+            assertEquals("b|" + i, fromB.get(i));
+        }
+        assertEquals(200, a.received.size());
+        assertEquals(Arrays.asList("a|0", "a|1"), b.received.subList(0, 2));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.platform;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.sparql.util.FmtUtils;
+import com.hp.hpl.jena.sparql.util.NodeFactory;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the binary format of the change messages.
+ *
+ * @author javier.solis.g
+ */
+public class SemanticChangeCodecTest {
+    private static final String NS = "http://www.semanticwebbuilder.org/swb4/ontology#";
+    private static final String OBJ = "http://www.site.org/swb#WebPage:home";
+
+    private final SemanticChangeCodec codec = new SemanticChangeCodec(Arrays.asList(NS, "http://www.site.org/swb#"));
+
+    private SemanticExternalChange roundTrip(SemanticChangeCodec decoder, SemanticExternalChange change) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(codec.encode(change));
+        assertTrue(SemanticChangeCodec.isMessage(buf));
+        assertEquals(SemanticChangeCodec.CHANGE, SemanticChangeCodec.getType(buf));
+        SemanticExternalChange ret = decoder.decode(buf);
+        assertFalse(buf.hasRemaining());
+        return ret;
+    }
+
+    private void assertRoundTrip(String prop, Node node, String action) throws IOException {
+        SemanticExternalChange change = new SemanticExternalChange(OBJ, prop, node, action);
+        SemanticExternalChange ret = roundTrip(codec, change);
+        assertEquals(change.getObjURI(), ret.getObjURI());
+        assertEquals(change.getPropURI(), ret.getPropURI());
+        assertEquals(change.getNode(), ret.getNode());
+        assertEquals(change.getAction(), ret.getAction());
+    }
+
+    @Test
+    public void testNodes() throws IOException {
+        assertRoundTrip(NS + "webPageParent", Node.createURI("http://www.site.org/swb#WebPage:root"), SemanticObject.ACT_ADD);
+        assertRoundTrip(NS + "webPageParent", Node.createURI("urn:outside:dictionary"), SemanticObject.ACT_ADD);
+        assertRoundTrip(NS + "blank", Node.createAnon(new AnonId("b0")), SemanticObject.ACT_ADD);
+        assertRoundTrip(NS + "title", Node.createLiteral("Home"), SemanticObject.ACT_SET);
+        assertRoundTrip(NS + "title", Node.createLiteral("Inicio", "es", false), SemanticObject.ACT_SET);
+        assertRoundTrip(NS + "views", Node.createLiteral("42", null, XSDDatatype.XSDlong), SemanticObject.ACT_SET);
+        assertRoundTrip(NS + "title", Node.createLiteral(""), SemanticObject.ACT_SET);
+        assertRoundTrip(NS + "title", null, SemanticObject.ACT_REMOVE);
+        assertRoundTrip(null, null, SemanticObject.ACT_REMOVE);
+    }
+
+    @Test
+    public void testActions() throws IOException {
+        for (String action : new String[]{SemanticObject.ACT_ADD, SemanticObject.ACT_REMOVE, SemanticObject.ACT_SET,
+                SemanticObject.ACT_CREATE, SemanticObject.ACT_CLONE, "CUSTOM"}) {
+            assertRoundTrip(NS + "title", Node.createLiteral("x"), action);
+        }
+    }
+
+    @Test
+    public void testDictionary() throws IOException {
+        SemanticChangeCodec other = new SemanticChangeCodec(Collections.singletonList("http://other.org/ns#"));
+        assertFalse(other.knowsDictionary(codec.getDictionaryId()));
+        SemanticExternalChange change = new SemanticExternalChange(OBJ, NS + "title", Node.createURI(NS + "x"), SemanticObject.ACT_ADD);
+        try {
+            roundTrip(other, change);
+            fail("Unknown dictionary decoded");
+        } catch (IOException expected) {
+        }
+
+        ByteBuffer req = ByteBuffer.wrap(other.encodeDictionaryRequest(codec.getDictionaryId()));
+        assertEquals(SemanticChangeCodec.DICT_REQ, SemanticChangeCodec.getType(req));
+        assertEquals(codec.getDictionaryId(), SemanticChangeCodec.getDictionaryId(req));
+
+        assertEquals(codec.getDictionaryId(), other.learnDictionary(ByteBuffer.wrap(codec.encodeDictionary())));
+        assertTrue(other.knowsDictionary(codec.getDictionaryId()));
+        SemanticExternalChange ret = roundTrip(other, change);
+        assertEquals(OBJ, ret.getObjURI());
+        assertEquals(Node.createURI(NS + "x"), ret.getNode());
+    }
+
+    @Test
+    public void testSharedDictionary() {
+        SemanticChangeCodec same = new SemanticChangeCodec(Arrays.asList("http://www.site.org/swb#", NS, NS, null, ""));
+        assertEquals(codec.getDictionaryId(), same.getDictionaryId());
+        assertEquals(2, same.getDictionarySize());
+    }
+
+    @Test
+    public void testOrigin() {
+        SemanticChangeCodec other = new SemanticChangeCodec(Collections.singletonList(NS));
+        byte[] data = codec.encodeDictionary();
+        assertTrue(codec.isLocal(ByteBuffer.wrap(data)));
+        assertFalse(other.isLocal(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void testInvalid() {
+        byte[] data = codec.encode(new SemanticExternalChange(OBJ, NS + "title", Node.createLiteral("Home"), SemanticObject.ACT_SET));
+        for (int len = 0; len < data.length; len++) {
+            try {
+                codec.decode(ByteBuffer.wrap(data, 0, len));
+                fail("Truncated message decoded, length " + len);
+            } catch (IOException expected) {
+            }
+        }
+        data[4] = (byte) (SemanticChangeCodec.VERSION + 1);
+        try {
+            codec.decode(ByteBuffer.wrap(data));
+            fail("Unsupported version decoded");
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * Encodes a change in the pipe delimited text format of the cluster messages, with full URIs.
+     */
+    private static byte[] encodeText(SemanticExternalChange change) {
+        return ("ini|chg|" + change.getAction() + "|" + change.getObjURI() + "|" + change.getPropURI() + "|"
+                + FmtUtils.stringForNode(change.getNode())).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static SemanticExternalChange decodeText(byte[] data) {
+        String[] parts = new String(data, StandardCharsets.UTF_8).split("\\|", 6);
+        return new SemanticExternalChange(parts[3], parts[4], NodeFactory.parseNode(parts[5]), parts[2]);
+    }
+
+    private static SemanticExternalChange[] sampleChanges() {
+        SemanticExternalChange[] changes = new SemanticExternalChange[1024];
+        for (int i = 0; i < changes.length; i++) {
+            Node node = i % 2 == 0 ? Node.createLiteral("Page " + i, "es", false)
+                    : Node.createURI("http://www.site.org/swb#WebPage:p" + (i / 2));
+            changes[i] = new SemanticExternalChange("http://www.site.org/swb#WebPage:p" + i,
+                    NS + (i % 2 == 0 ? "title" : "parent"), node, SemanticObject.ACT_SET);
+        }
+        return changes;
+    }
+
+    @Test
+    public void testSizeAgainstText() throws IOException {
+        long binary = 0;
+        long text = 0;
+        for (SemanticExternalChange change : sampleChanges()) {
+            byte[] data = encodeText(change);
+            SemanticExternalChange ret = decodeText(data);
+            assertEquals(change.getObjURI(), ret.getObjURI());
+            assertEquals(change.getNode(), ret.getNode());
+            text += data.length;
+            binary += codec.encode(change).length;
+        }
+        //Namespaces are sent once in the dictionary instead of in every message
+        assertTrue("binary:" + binary + " text:" + text, binary * 2 < text);
+    }
+
+    /**
+     * Compares the throughput and size of the binary and the text formats, enabled with -Dswb.benchmark=true.
+     */
+    @Test
+    public void testThroughputAgainstText() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("swb.benchmark"));
+        int count = Integer.getInteger("swb.benchmarkChanges", 1000000);
+        SemanticExternalChange[] changes = sampleChanges();
+        long binaryBytes = 0;
+        long binaryTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            byte[] data = codec.encode(changes[i & 1023]);
+            binaryBytes += data.length;
+            assertNotNull(codec.decode(ByteBuffer.wrap(data)));
+        }
+        binaryTime = System.nanoTime() - binaryTime;
+
+        long textBytes = 0;
+        long textTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            byte[] data = encodeText(changes[i & 1023]);
+            textBytes += data.length;
+            assertNotNull(decodeText(data));
+        }
+        textTime = System.nanoTime() - textTime;
+
+        System.out.println("SemanticChangeCodec: " + count + " changes, binary "
+                + (count * 1000000000L / Math.max(binaryTime, 1)) + " changes/s " + (binaryBytes / count) + " bytes/change, text "
+                + (count * 1000000000L / Math.max(textTime, 1)) + " changes/s " + (textBytes / count) + " bytes/change, speedup "
+                + String.format("%.2f", (double) textTime / Math.max(binaryTime, 1)) + "x, size ratio "
+                + String.format("%.2f", (double) textBytes / Math.max(binaryBytes, 1)) + "x");
+        assertTrue(binaryBytes < textBytes);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.rdf;
+
+import com.hp.hpl.jena.db.DBConnection;
+import com.hp.hpl.jena.db.ModelRDB;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of {@link BulkLoadGraph} over HSQLDB and Derby. By default a few thousand triples are loaded to check that
+ * JDBC batches are used, -Dswb.benchmark=true loads one million triples (or -Dswb.bulkLoadTriples) and reports the
+ * speedup of the bulk load.
+ *
+ * @author javier.solis.g
+ */
+public class BulkLoadGraphTest {
+    private static final String NS = "http://example.org/";
+    private static final boolean BENCHMARK = Boolean.getBoolean("swb.benchmark");
+    private static final int TRIPLES = Integer.getInteger("swb.bulkLoadTriples", BENCHMARK ? 1000000 : 5000);
+
+    /**
+     * Counts the statements sent with and without JDBC batches.
+     */
+    private static final class Counters {
+        private final AtomicLong updates = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong batched = new AtomicLong();
+    }
+
+    private static Triple triple(int i) {
+        return Triple.create(Node.createURI(NS + "s" + (i / 10)), Node.createURI(NS + "p" + (i % 10)),
+                Node.createLiteral("value " + i));
+    }
+
+    @Test
+    public void testBatches() {
+        Graph target = ModelFactory.createDefaultModel().getGraph();
+        BulkLoadGraph graph = new BulkLoadGraph(target, 10);
+        for (int i = 0; i < 25; i++) {
+            graph.add(triple(i));
+        }
+        assertEquals(20, target.size());
+        assertEquals(20, graph.getCount());
+        assertTrue(graph.contains(triple(24)));
+        assertEquals(25, target.size());
+        graph.delete(triple(0));
+        assertEquals(24, target.size());
+        graph.add(triple(0));
+        graph.close();
+        assertEquals(25, target.size());
+        assertEquals(26, graph.getCount());
+    }
+
+    @Test
+    public void testRead() {
+        StringBuilder nt = new StringBuilder();
+        for (int i = 0; i < 1234; i++) {
+            nt.append('<').append(NS).append('s').append(i).append("> <").append(NS).append("p> \"v").append(i)
+                    .append("\" .\n");
+        }
+        Model model = ModelFactory.createDefaultModel();
+        BulkLoadGraph graph = new BulkLoadGraph(model.getGraph(), 100);
+        ModelFactory.createModelForGraph(graph).read(new ByteArrayInputStream(nt.toString()
+                .getBytes(StandardCharsets.UTF_8)), null, "N-TRIPLE");
+        graph.flush();
+        assertEquals(1234, model.size());
+        assertEquals(1234, graph.getCount());
+    }
+
+    /**
+     * Wraps a JDBC connection counting the statements executed one by one and in batches.
+     */
+    private static Connection counting(Connection conn, Counters counters) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (p, m, args) -> {
+                    Object ret = invoke(conn, m, args);
+                    if (ret instanceof PreparedStatement) {
+                        return statement((PreparedStatement) ret, PreparedStatement.class, counters);
+                    } else if (ret instanceof Statement) {
+                        return statement((Statement) ret, Statement.class, counters);
+                    }
+                    return ret;
+                });
+    }
+
+    private static <T extends Statement> T statement(T st, Class<T> type, Counters counters) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, m, args) -> {
+            switch (m.getName()) {
+                case "executeUpdate":
+                    counters.updates.incrementAndGet();
+                    break;
+                case "addBatch":
+                    counters.batched.incrementAndGet();
+                    break;
+                case "executeBatch":
+                    counters.batches.incrementAndGet();
+                    break;
+                default:
+                    break;
+            }
+            return invoke(st, m, args);
+        }));
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Loads the triples one by one and in batches into a new RDB model, the Jena drivers are used because the
+     * SWB ones need the platform connection pool, both store the triples with the same Jena code.
+     */
+    private void benchmark(String url, String dbType) throws SQLException {
+        long[] times = new long[2];
+        Counters[] counters = new Counters[2];
+        for (int run = 0; run < 2; run++) {
+            boolean bulk = run == 1;
+            counters[run] = new Counters();
+            Connection jdbc = DriverManager.getConnection(url + (bulk ? "bulk" : "single") + (url.startsWith("jdbc:derby") ? ";create=true" : ""), "sa", "");
+            DBConnection conn = new DBConnection(counting(jdbc, counters[run]), dbType);
+            try {
+                ModelRDB model = ModelRDB.createModel(conn);
+                model.setDoFastpath(false);
+                long time = System.currentTimeMillis();
+                model.begin();
+                Graph graph = bulk ? new BulkLoadGraph(model.getGraph(), 1000) : model.getGraph();
+                for (int i = 0; i < TRIPLES; i++) {
+                    graph.add(triple(i));
+                }
+                if (bulk) {
+                    ((BulkLoadGraph) graph).flush();
+                }
+                model.commit();
+                times[run] = System.currentTimeMillis() - time;
+                assertEquals(TRIPLES, model.size());
+            } finally {
+                conn.close();
+            }
+        }
+        //Each batch of triples is stored with JDBC batch inserts
+        assertTrue(counters[1].batches.get() > 0);
+        assertTrue(counters[1].batched.get() >= TRIPLES);
+        assertTrue(counters[1].updates.get() < counters[0].updates.get() / 10);
+        if (BENCHMARK) {
+            double speedup = (double) times[0] / Math.max(times[1], 1);
+            System.out.println(dbType + " bulk load of " + TRIPLES + " triples: speedup "
+                    + String.format("%.2f", speedup) + "x, " + counters[0].updates + " single inserts replaced by "
+                    + counters[1].batches + " batches");
+            assertTrue("Bulk load slower than one by one on " + dbType, speedup > 1);
+        }
+    }
+
+    @Test
+    public void testHSQLDB() throws Exception {
+        Class.forName("org.hsqldb.jdbcDriver");
+        benchmark("jdbc:hsqldb:mem:", "HSQLDB");
+    }
+
+    @Test
+    public void testDerby() throws Exception {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        benchmark("jdbc:derby:memory:", "Derby");
+    }
+}
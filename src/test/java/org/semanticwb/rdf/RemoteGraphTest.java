@@ -0,0 +1,269 @@
+/*
+ * SemanticWebBuilder es una plataforma para el desarrollo de portales y aplicaciones de integración,
+ * colaboración y conocimiento, que gracias al uso de tecnología semántica puede generar contextos de
+ * información alrededor de algún tema de interés o bien integrar información y aplicaciones de diferentes
+ * fuentes, donde a la información se le asigna un significado, de forma que pueda ser interpretada y
+ * procesada por personas y/o sistemas, es una creación original del Fondo de Información y Documentación
+ * para la Industria INFOTEC, cuyo registro se encuentra actualmente en trámite.
+ *
+ * INFOTEC pone a su disposición la herramienta SemanticWebBuilder a través de su licenciamiento abierto al público ('open source'),
+ * en virtud del cual, usted podrá usarlo en las mismas condiciones con que INFOTEC lo ha diseñado y puesto a su disposición;
+ * aprender de él; distribuirlo a terceros; acceder a su código fuente y modificarlo, y combinarlo o enlazarlo con otro software,
+ * todo ello de conformidad con los términos y condiciones de la LICENCIA ABIERTA AL PÚBLICO que otorga INFOTEC para la utilización
+ * del SemanticWebBuilder 4.0.
+ *
+ * INFOTEC no otorga garantía sobre SemanticWebBuilder, de ninguna especie y naturaleza, ni implícita ni explícita,
+ * siendo usted completamente responsable de la utilización que le dé y asumiendo la totalidad de los riesgos que puedan derivar
+ * de la misma.
+ *
+ * Si usted tiene cualquier duda o comentario sobre SemanticWebBuilder, INFOTEC pone a su disposición la siguiente
+ * dirección electrónica:
+ *  http://www.semanticwebbuilder.org.mx
+ */
+package org.semanticwb.rdf;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.ResultSetFormatter;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of {@link RemoteGraph} against a SPARQL endpoint embedded in the test.
+ *
+ * @author javier.solis
+ */
+public class RemoteGraphTest {
+    private static final String NS = "http://example.org/";
+    private static final int SUBJECTS = 300;
+    private static final Pattern VALUES = Pattern.compile("VALUES \\?s \\{([^}]*)\\} ");
+
+    private final Model data = ModelFactory.createDefaultModel();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> queries = new ArrayList<>();
+    private volatile long delay = 0;
+    private HttpServer server;
+    private ExecutorService executor;
+    private String endpoint;
+
+    @Before
+    public void setUp() throws IOException {
+        Property p = data.createProperty(NS, "p");
+        Property q = data.createProperty(NS, "q");
+        for (int i = 0; i < SUBJECTS; i++) {
+            Resource s = data.createResource(NS + "s" + i);
+            s.addProperty(p, "value " + i);
+            s.addProperty(q, data.createResource(NS + "s" + ((i + 1) % SUBJECTS)));
+        }
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/sparql", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/sparql";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers a SELECT query, VALUES is rewritten as a FILTER because the local parser does not know it.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String params = exchange.getRequestURI().getRawQuery();
+            if ("POST".equals(exchange.getRequestMethod())) {
+                params = read(exchange.getRequestBody());
+            }
+            String query = null;
+            for (String param : params.split("&")) {
+                if (param.startsWith("query=")) {
+                    query = URLDecoder.decode(param.substring(6), "UTF-8");
+                }
+            }
+            requests.incrementAndGet();
+            synchronized (queries) {
+                queries.add(query);
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            Matcher m = VALUES.matcher(query);
+            if (m.find()) {
+                StringBuilder filter = new StringBuilder(" FILTER(");
+                String[] terms = m.group(1).trim().split("\\s+");
+                for (int i = 0; i < terms.length; i++) {
+                    filter.append(i > 0 ? " || " : "").append("sameTerm(?s, ").append(terms[i]).append(')');
+                }
+                query = m.replaceFirst("");
+                query = query.substring(0, query.lastIndexOf('}')) + filter + ") }";
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            QueryExecution qexec = QueryExecutionFactory.create(query, data);
+            try {
+                ResultSetFormatter.outputAsXML(out, qexec.execSelect());
+            } finally {
+                qexec.close();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+xml");
+            exchange.sendResponseHeaders(200, out.size());
+            try (OutputStream os = exchange.getResponseBody()) {
+                out.writeTo(os);
+            }
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int len;
+        while ((len = in.read(buf)) > 0) {
+            out.write(buf, 0, len);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Node subject(int i) {
+        return Node.createURI(NS + "s" + i);
+    }
+
+    @Test
+    public void testFind() {
+        RemoteGraph graph = new RemoteGraph(endpoint);
+        List<Triple> triples = graph.find(subject(1), Node.ANY, Node.ANY).toList();
+        assertEquals(2, triples.size());
+        assertTrue(triples.contains(Triple.create(subject(1), Node.createURI(NS + "q"), subject(2))));
+        assertEquals(1, graph.find(Node.ANY, Node.ANY, subject(2)).toList().size());
+        assertEquals(SUBJECTS * 2, graph.find(Node.ANY, Node.ANY, Node.ANY).toList().size());
+        assertEquals(3, requests.get());
+        assertEquals(0, graph.getCacheHits());
+        assertEquals(0, graph.getCacheMisses());
+    }
+
+    @Test
+    public void testCache() throws InterruptedException {
+        RemoteGraph graph = new RemoteGraph(endpoint, 100, 200);
+        assertEquals(2, graph.find(subject(1), Node.ANY, Node.ANY).toList().size());
+        assertEquals(2, graph.find(subject(1), Node.ANY, Node.ANY).toList().size());
+        assertEquals(1, requests.get());
+        assertEquals(1, graph.getCacheHits());
+        assertEquals(1, graph.getCacheMisses());
+
+        //Patterns without a bound subject or object are not cached
+        graph.find(Node.ANY, Node.createURI(NS + "p"), Node.ANY).toList();
+        graph.find(Node.ANY, Node.createURI(NS + "p"), Node.ANY).toList();
+        assertEquals(3, requests.get());
+
+        Thread.sleep(300);
+        graph.find(subject(1), Node.ANY, Node.ANY).toList();
+        assertEquals(4, requests.get());
+
+        graph.clearCache();
+        graph.find(subject(1), Node.ANY, Node.ANY).toList();
+        assertEquals(5, requests.get());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        RemoteGraph graph = new RemoteGraph(endpoint, 100, 60000);
+        delay = 300;
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Triple>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit((Callable<List<Triple>>) () -> {
+                    start.await();
+                    return graph.find(subject(7), Node.ANY, Node.ANY).toList();
+                }));
+            }
+            start.countDown();
+            for (Future<List<Triple>> result : results) {
+                assertEquals(2, result.get().size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, requests.get());
+        assertEquals(1, graph.getRemoteQueries());
+        assertEquals(threads - 1, graph.getCoalescedFinds() + graph.getCacheHits());
+    }
+
+    @Test
+    public void testBatch() {
+        RemoteGraph graph = new RemoteGraph(endpoint, 1000, 60000);
+        List<Node> subjects = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            subjects.add(subject(i));
+        }
+        Set<Triple> triples = new HashSet<>(graph.findBySubjects(subjects).toList());
+        assertEquals(500, triples.size());
+        assertEquals(3, requests.get());
+        for (String query : queries) {
+            assertTrue(query, query.contains("VALUES ?s {"));
+        }
+
+        //Each subject was cached
+        assertEquals(2, graph.find(subject(120), Node.ANY, Node.ANY).toList().size());
+        assertEquals(3, requests.get());
+
+        //Only the subjects not cached are requested
+        subjects.add(subject(299));
+        assertEquals(502, graph.findBySubjects(subjects).toList().size());
+        assertEquals(4, requests.get());
+        assertEquals(251, graph.getCacheMisses());
+    }
+
+    @Test
+    public void testBatchWithoutCache() {
+        RemoteGraph graph = new RemoteGraph(endpoint);
+        List<Node> subjects = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            subjects.add(subject(i));
+        }
+        assertEquals(500, graph.findBySubjects(subjects).toList().size());
+        assertEquals(3, requests.get());
+        assertEquals(0, graph.getCacheMisses());
+        assertEquals(0, graph.getCacheHits());
+    }
+}